@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import com.github.idelstak.matrixrain.auxiliary.graphics.IndexBitmapObject;
+import com.github.idelstak.matrixrain.font.GlyphFactories;
+import com.github.idelstak.matrixrain.font.GlyphFactory;
+import com.github.idelstak.matrixrain.font.MemoryGlyph;
+
+/** Shared, lazily built fixtures for the benchmarks. All of them work under java.awt.headless. */
+final class BenchmarkFixtures {
+
+  private static GlyphFactory rainGlyphFactory;
+
+  private BenchmarkFixtures() {}
+
+  /** Parses a window size of the form "1920x1080". */
+  static int[] parseResolution(String resolution) {
+    int separator = resolution.indexOf('x');
+    return new int[] {
+      Integer.parseInt(resolution.substring(0, separator)),
+      Integer.parseInt(resolution.substring(separator + 1))
+    };
+  }
+
+  /** The katakana glyph factory exactly as MatrixPanel builds it. */
+  static synchronized GlyphFactory getRainGlyphFactory() {
+    if (rainGlyphFactory == null) rainGlyphFactory = GlyphFactories.createRainGlyphFactory();
+    return rainGlyphFactory;
+  }
+
+  /**
+   * A stand-in for the desktop snapshot taken by MatrixAction: gradients plus a few hard-edged
+   * shapes, so that edge detection and the luminosity histogram have something to work with.
+   */
+  static BufferedImage createSourceImage(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setPaint(new GradientPaint(0, 0, new Color(30, 40, 90), width, height, new Color(200, 190, 160)));
+    g.fillRect(0, 0, width, height);
+    g.setColor(Color.white);
+    g.fillRect(width / 10, height / 10, width / 3, height / 4);
+    g.setColor(Color.darkGray);
+    g.fillOval(width / 2, height / 3, width / 3, height / 2);
+    g.setColor(Color.orange);
+    g.fillRect(0, height - height / 12, width, height / 12);
+    g.dispose();
+    return image;
+  }
+
+  /** An index bitmap with a line of glyphs across the middle, like the title before zooming. */
+  static IndexBitmapObject createTitleBitmap(int width, int height) {
+    GlyphFactory glyphFactory = getRainGlyphFactory();
+    int[][] pixels = new int[width][height];
+    int glyphCount = glyphFactory.getGlyphCount();
+    int glyphSize = glyphFactory.getSizeByIndex(0);
+    int top = (height - glyphSize) / 2;
+    int left = width / 4;
+    for (int index = 0; left + glyphSize < 3 * width / 4; index++) {
+      MemoryGlyph glyph = glyphFactory.getGlyph(index % glyphCount, 0, 0, 0);
+      for (int i = 0; i < glyphSize; i++)
+        for (int j = 0; j < glyphSize; j++) pixels[left + i][top + j] = glyph.getPixel(i, j);
+      left += glyphSize;
+    }
+    return new IndexBitmapObject(pixels, width, height);
+  }
+}
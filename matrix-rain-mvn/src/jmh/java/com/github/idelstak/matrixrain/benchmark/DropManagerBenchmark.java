@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.idelstak.matrixrain.auxiliary.graphics.IndexImageManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager1ColorScheme;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
+import com.github.idelstak.matrixrain.drop.DropManager;
+
+/** Per-frame cost of the regular rain: moving the drops and painting them into the index map. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DropManagerBenchmark {
+
+  @Param({"1280x720", "1920x1080", "3840x2160"})
+  public String resolution;
+
+  @Param({"50", "500", "5000"})
+  public int dropCount;
+
+  // strip-parallel rasterisation in fillColorIndexMap
+  @Param({"false", "true"})
+  public boolean parallel;
+
+  private DropManager dropManager;
+
+  private IndexImageManager indexImageManager;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] size = BenchmarkFixtures.parseResolution(this.resolution);
+    this.dropManager = new DropManager(BenchmarkFixtures.getRainGlyphFactory(), size[0], size[1]);
+    this.dropManager.setParallelRasterization(this.parallel);
+    // the same rain on every trial and fork
+    this.dropManager.setRandomSource(new RandomSource(42));
+    this.dropManager.createDrops();
+    this.dropManager.adjustDropCount(this.dropCount - this.dropManager.getDropCount());
+    this.indexImageManager =
+        new IndexImageManager(size[0], size[1], null, new ColorManager1ColorScheme(Color.green));
+    // let the freshly added drops spread over the whole window
+    for (int i = 0; i < size[1] / 4; i++) this.dropManager.iteration(1);
+  }
+
+  @Benchmark
+  public int iteration() {
+    this.dropManager.iteration(1);
+    return this.dropManager.getDropCount();
+  }
+
+  @Benchmark
+  public IndexImageManager fillColorIndexMap() {
+    this.indexImageManager.resetImage();
+    this.dropManager.fillColorIndexMap(this.indexImageManager);
+    return this.indexImageManager;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.idelstak.matrixrain.auxiliary.graphics.IndexImageManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager1ColorScheme;
+import com.github.idelstak.matrixrain.drop.DropManager;
+
+/** Per-frame cost of turning the intensity index map into ARGB pixels. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class IndexImageManagerBenchmark {
+
+  @Param({"1280x720", "1920x1080", "3840x2160"})
+  public String resolution;
+
+  @Param({"50", "5000"})
+  public int dropCount;
+
+  private DropManager dropManager;
+
+  private IndexImageManager indexImageManager;
+
+  private IndexImageManager indexedImageManager;
+
+  // stands in for the window both kinds of frames are drawn into
+  private BufferedImage screen;
+
+  private Graphics2D screenGraphics;
+
+  private int[] screenPixels;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] size = BenchmarkFixtures.parseResolution(this.resolution);
+    this.dropManager = new DropManager(BenchmarkFixtures.getRainGlyphFactory(), size[0], size[1]);
+    this.dropManager.createDrops();
+    this.dropManager.adjustDropCount(this.dropCount - this.dropManager.getDropCount());
+    for (int i = 0; i < size[1] / 4; i++) this.dropManager.iteration(1);
+    this.indexImageManager =
+        new IndexImageManager(size[0], size[1], null, new ColorManager1ColorScheme(Color.green));
+    this.indexedImageManager =
+        new IndexImageManager(size[0], size[1], null, new ColorManager1ColorScheme(Color.green));
+    this.indexedImageManager.setIndexedOutput(true);
+    this.screen = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+    this.screenGraphics = this.screen.createGraphics();
+    this.screenPixels = ((DataBufferInt) this.screen.getRaster().getDataBuffer()).getData();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.screenGraphics.dispose();
+  }
+
+  /** A whole index frame: clear, paint the drops, then colorize through the color manager. */
+  @Benchmark
+  public int[] recomputeImage() {
+    this.indexImageManager.resetImage();
+    this.dropManager.fillColorIndexMap(this.indexImageManager);
+    this.indexImageManager.recomputeImage();
+    return this.indexImageManager.getBitmap1D();
+  }
+
+  /** The same frame colorized per pixel and copied into the screen, as MatrixPanel does. */
+  @Benchmark
+  public BufferedImage drawArgbFrame() {
+    int[] frame = this.recomputeImage();
+    System.arraycopy(frame, 0, this.screenPixels, 0, frame.length);
+    return this.screen;
+  }
+
+  /** The same frame left as intensities and colorized by the palette while drawing. */
+  @Benchmark
+  public BufferedImage drawIndexedFrame() {
+    this.indexedImageManager.resetImage();
+    this.dropManager.fillColorIndexMap(this.indexedImageManager);
+    this.indexedImageManager.recomputeImage();
+    this.screenGraphics.drawImage(this.indexedImageManager.getIndexedImage(), 0, 0, null);
+    return this.screen;
+  }
+
+  @Benchmark
+  public IndexImageManager resetImage() {
+    this.indexImageManager.resetImage();
+    return this.indexImageManager;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.idelstak.matrixrain.auxiliary.graphics.IndexBitmapObject;
+import com.github.idelstak.matrixrain.auxiliary.math.intersect.Circle1PixelArbitraryIntersectorFactory;
+import com.github.idelstak.matrixrain.phosphore.PhosphoreCloudFactory;
+import com.github.idelstak.matrixrain.phosphore.Phosphorizer;
+
+/** One title zoom frame, cropped and phosphorized the way TitleZoomManager does it. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PhosphorizerBenchmark {
+
+  @Param({"1280x720", "1920x1080", "3840x2160"})
+  public String resolution;
+
+  @Param({"1.0", "1.5", "4.5"})
+  public double factor;
+
+  private PhosphoreCloudFactory pcFct;
+
+  private Circle1PixelArbitraryIntersectorFactory iFct;
+
+  private IndexBitmapObject toPhosphorize;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] size = BenchmarkFixtures.parseResolution(this.resolution);
+    IndexBitmapObject titleBitmap = BenchmarkFixtures.createTitleBitmap(size[0], size[1]);
+
+    this.pcFct = new PhosphoreCloudFactory(5);
+    this.pcFct.setCurrFactor(this.factor);
+    this.iFct = new Circle1PixelArbitraryIntersectorFactory();
+
+    int tpWidth = Math.min(size[0], (int) (size[0] / this.factor) + 4);
+    int tpHeight = Math.min(size[1], (int) (size[1] / this.factor) + 4);
+    int startCol = (size[0] - tpWidth) / 2;
+    int startRow = (size[1] - tpHeight) / 2;
+    int[][] titlePixels = titleBitmap.getBitmap();
+    int[][] tpPixels = new int[tpWidth][tpHeight];
+    for (int i = 0; i < tpWidth; i++)
+      for (int j = 0; j < tpHeight; j++) tpPixels[i][j] = titlePixels[i + startCol][j + startRow];
+    this.toPhosphorize = new IndexBitmapObject(tpPixels, tpWidth, tpHeight);
+  }
+
+  @Benchmark
+  public IndexBitmapObject createScaledUpPhosphoreVersion() {
+    return Phosphorizer.createScaledUpPhosphoreVersion(
+        this.toPhosphorize, this.pcFct, this.iFct, this.factor, true);
+  }
+}
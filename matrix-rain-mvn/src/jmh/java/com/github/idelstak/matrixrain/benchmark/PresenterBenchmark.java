@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.idelstak.matrixrain.render.BufferedImagePresenter;
+import com.github.idelstak.matrixrain.render.FramePresenter;
+import com.github.idelstak.matrixrain.render.MemoryImagePresenter;
+
+/**
+ * Per-frame cost of getting a finished frame on screen: presenting the next buffer and drawing it
+ * into an opaque destination that stands in for the window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PresenterBenchmark {
+
+  @Param({"1920x1080", "3840x2160"})
+  public String resolution;
+
+  @Param({"memory", "buffered"})
+  public String presenter;
+
+  private FramePresenter framePresenter;
+
+  private BufferedImage screen;
+
+  private Graphics2D screenGraphics;
+
+  private int frame;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] size = BenchmarkFixtures.parseResolution(this.resolution);
+    this.framePresenter =
+        switch (this.presenter) {
+          case "memory" -> new MemoryImagePresenter(size[0], size[1], 3);
+          case "buffered" -> new BufferedImagePresenter(size[0], size[1], 3);
+          default -> throw new IllegalArgumentException(this.presenter);
+        };
+    for (int i = 0; i < 3; i++) {
+      int[] pixels = this.framePresenter.getPixels(i);
+      for (int j = 0; j < pixels.length; j++) pixels[j] = 0xFF000000 | ((i * 64 + j) & 0xFF) << 8;
+    }
+    this.screen = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+    this.screenGraphics = this.screen.createGraphics();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.screenGraphics.dispose();
+  }
+
+  /** A new frame in each call, cycling through the three buffers like the frame exchange does. */
+  @Benchmark
+  public BufferedImage presentAndDraw() {
+    this.frame = (this.frame + 1) % 3;
+    this.framePresenter.getPixels(this.frame)[0]++;
+    this.screenGraphics.drawImage(this.framePresenter.present(this.frame, true), 0, 0, null);
+    return this.screen;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager1ColorScheme;
+import com.github.idelstak.matrixrain.intro.rain.BellRainManager;
+import com.github.idelstak.matrixrain.intro.rain.LetterRainManager;
+
+/**
+ * The two rain stages of the intro. A stage only lasts a bounded number of iterations, so every
+ * measurement plays one freshly constructed stage from start to finish; construction is measured
+ * separately.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RainStageBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Source {
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    int width, height;
+
+    BufferedImage image;
+
+    ColorManager colorManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      int[] size = BenchmarkFixtures.parseResolution(this.resolution);
+      this.width = size[0];
+      this.height = size[1];
+      this.image = BenchmarkFixtures.createSourceImage(this.width, this.height);
+      this.colorManager = new ColorManager1ColorScheme(Color.green);
+    }
+
+    BellRainManager createBellRainManager() {
+      return new BellRainManager(this.width, this.height, this.image, 3, 6, this.colorManager);
+    }
+
+    LetterRainManager createLetterRainManager() {
+      return new LetterRainManager(
+          this.width,
+          this.height,
+          this.image,
+          6,
+          this.colorManager,
+          BenchmarkFixtures.getRainGlyphFactory());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class BellRain {
+    BellRainManager manager;
+
+    @Setup(Level.Iteration)
+    public void setUp(Source source) {
+      this.manager = source.createBellRainManager();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class LetterRain {
+    LetterRainManager manager;
+
+    @Setup(Level.Iteration)
+    public void setUp(Source source) {
+      this.manager = source.createLetterRainManager();
+    }
+  }
+
+  @Benchmark
+  public BellRainManager bellRainConstruction(Source source) {
+    return source.createBellRainManager();
+  }
+
+  @Benchmark
+  public int bellRainIteration(BellRain bellRain) {
+    int iterations = 0;
+    while (!bellRain.manager.isFinished()) {
+      bellRain.manager.iteration();
+      iterations++;
+    }
+    return iterations;
+  }
+
+  @Benchmark
+  public LetterRainManager letterRainConstruction(Source source) {
+    return source.createLetterRainManager();
+  }
+
+  @Benchmark
+  public int letterRainIteration(LetterRain letterRain) {
+    int iterations = 0;
+    while (!letterRain.manager.isFinished()) {
+      letterRain.manager.iteration();
+      iterations++;
+    }
+    return iterations;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.benchmark;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.idelstak.matrixrain.auxiliary.graphics.PixelKernels;
+import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.interpolator.ColorInterpolator;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager1ColorScheme;
+import com.github.idelstak.matrixrain.font.GlyphFactory;
+import com.github.idelstak.matrixrain.font.MemoryGlyph;
+
+/** Glyph painting and the full-frame blends used by the rain transitions. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+public class TrueColorBitmapManagerBenchmark {
+
+  @Param({"1280x720", "1920x1080", "3840x2160"})
+  public String resolution;
+
+  // pixel kernels behind the bulk blends
+  @Param({"scalar", "vector"})
+  public String kernels;
+
+  private TrueColorBitmapManager bitmapManager;
+
+  private TrueColorBitmapObject sourceBitmap;
+
+  private MemoryGlyph[] glyphs;
+
+  private ColorInterpolator glyphInterpolator;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] size = BenchmarkFixtures.parseResolution(this.resolution);
+    this.bitmapManager = new TrueColorBitmapManager(size[0], size[1]);
+    this.bitmapManager.setPixelKernels(
+        this.kernels.equals("scalar") ? PixelKernels.getScalar() : PixelKernels.getInstance());
+    this.sourceBitmap =
+        new TrueColorBitmapObject(
+            BenchmarkFixtures.createSourceImage(size[0], size[1]), size[0], size[1]);
+    this.glyphInterpolator =
+        new ColorManager1ColorScheme(Color.green).getColorInterpolatorLight();
+
+    // one line of the largest rain glyphs across the window
+    GlyphFactory glyphFactory = BenchmarkFixtures.getRainGlyphFactory();
+    int sizeIndex = glyphFactory.getSizeCount();
+    int glyphCount = size[0] / glyphFactory.getSizeByIndex(sizeIndex);
+    this.glyphs = new MemoryGlyph[glyphCount];
+    for (int i = 0; i < glyphCount; i++)
+      this.glyphs[i] = glyphFactory.getGlyph(i % glyphFactory.getGlyphCount(), sizeIndex, 0, 0);
+  }
+
+  @Benchmark
+  public TrueColorBitmapManager paintGlyph() {
+    int left = 0;
+    for (MemoryGlyph glyph : this.glyphs) {
+      this.bitmapManager.paintGlyph(glyph, 0, left, 100, this.glyphInterpolator, false);
+      left += glyph.getSize();
+    }
+    return this.bitmapManager;
+  }
+
+  // alpha below 0.5 scales the incoming pixels, above 0.5 the existing ones
+  @Benchmark
+  public TrueColorBitmapManager blendTrueColorObjectIn() {
+    this.bitmapManager.blendTrueColorObject(this.sourceBitmap, 0.3);
+    return this.bitmapManager;
+  }
+
+  @Benchmark
+  public TrueColorBitmapManager blendTrueColorObjectOut() {
+    this.bitmapManager.blendTrueColorObject(this.sourceBitmap, 0.7);
+    return this.bitmapManager;
+  }
+
+  @Benchmark
+  public TrueColorBitmapManager overlayTrueColorObject() {
+    this.bitmapManager.overlayTrueColorObject(this.sourceBitmap);
+    return this.bitmapManager;
+  }
+
+  @Benchmark
+  public TrueColorBitmapManager paintTrueColorObject() {
+    this.bitmapManager.paintTrueColorObject(this.sourceBitmap);
+    return this.bitmapManager;
+  }
+}
@@ -25,18 +25,20 @@ package com.github.idelstak.matrixrain;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Image;
-import java.io.IOException;
 import java.util.Calendar;
-import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager1ColorScheme;
 import com.github.idelstak.matrixrain.auxiliary.math.intersect.Circle1PixelArbitraryIntersectorFactory;
 import com.github.idelstak.matrixrain.drop.DropManager;
+import com.github.idelstak.matrixrain.font.GlyphFactories;
 import com.github.idelstak.matrixrain.font.GlyphFactory;
 import com.github.idelstak.matrixrain.intro.IntroManager;
 import com.github.idelstak.matrixrain.paint.MatrixPainter;
 import com.github.idelstak.matrixrain.phosphore.PhosphoreCloudFactory;
+import com.github.idelstak.matrixrain.render.FrameScheduler;
+import com.github.idelstak.matrixrain.render.FrameStats;
+import com.github.idelstak.matrixrain.render.RainMetrics;
 
 public final class MatrixPanel extends JPanel implements Runnable {
 
@@ -47,10 +49,18 @@ public final class MatrixPanel extends JPanel implements Runnable {
   public static final int STATE_REPLAYINTRO = 31;
   public static final int STATE_REPLAYRAIN = 32;
   public static final int TIME_DELTA = 100;
+  // rendering rate; the simulation ticks every TIME_DELTA and only a tick gives a new frame
+  public static final int TARGET_FPS = Integer.getInteger("matrixrain.fps", 60);
+  // paints the frames between two ticks as a cross-fade of both, one tick behind the simulation
+  public static final boolean CROSS_FADE = Boolean.getBoolean("matrixrain.crossfade");
+  // how many ticks may run back to back when catching up before the backlog is dropped
+  public static final int MAX_TICKS_PER_FRAME = 5;
+  // overlays frame rate and stage timings on the animation
+  public static final boolean SHOW_HUD = Boolean.getBoolean("matrixrain.hud");
   private String message = "";
   private StateStack stateStack;
   private int appWidth, appHeight;
-  private Thread delayManager = null; // The thread that handles time delays
+  private volatile Thread delayManager = null; // The thread that handles time delays
   private MatrixPainter quizPainter;
   private Image mainImage;
   private String titleLine;
@@ -59,8 +69,18 @@ public final class MatrixPanel extends JPanel implements Runnable {
   private GlyphFactory abcGlyphFactory;
   private PhosphoreCloudFactory pcFct;
   private Circle1PixelArbitraryIntersectorFactory iFct;
+  private FrameScheduler frameScheduler;
+  private final FrameStats frameStats = new FrameStats();
+  // JMX view of the running animation, see RainMetricsMBean
+  private final RainMetrics rainMetrics = new RainMetrics(this.frameStats);
+  // whether an iteration produced a frame that has not been painted yet
+  private boolean frameDirty = false;
+  // cross-fade only: intro frames of the last two ticks and the weight of the newer one last shown
+  private int[] previousIntroFrame;
+  private int[] latestIntroFrame;
+  private int presentedWeight = -1;
   /** Indication whether a stop request has been issued on <code>this</code> thread. */
-  private boolean stopRequested = false;
+  private volatile boolean stopRequested = false;
 
   /** Initializing the applet. */
   public void init() {
@@ -72,11 +92,12 @@ public final class MatrixPanel extends JPanel implements Runnable {
 
     this.quizPainter = new MatrixPainter(this, new ColorManager1ColorScheme(Color.green));
     this.quizPainter.createMessageGlyphFactory();
+    this.rainMetrics.register();
 
     // this.timer = QATimer.getHandle(this);
 
     this.message = "Initializing...";
-    this.repaint();
+    this.presentFrame();
   }
 
   /** Creates and runs this thread. */
@@ -91,33 +112,10 @@ public final class MatrixPanel extends JPanel implements Runnable {
 
     this.stateStack.peekAndReplace(STATE_LOADFILES);
     this.message = "Loading files...";
-    repaint();
-
-    Image katakanaGlyphImg = null, abcGlyphImg = null;
-    try {
-      katakanaGlyphImg =
-          ImageIO.read(MatrixPanel.class.getResource("/images/common/katakana_b.gif"));
-      abcGlyphImg = ImageIO.read(MatrixPanel.class.getResource("/images/common/abc.gif"));
-    } catch (IOException ioe) {
-    }
+    presentFrame();
 
-    long startTime = System.currentTimeMillis();
-    this.glyphFactory = new GlyphFactory(katakanaGlyphImg, 30, null);
-    // create mirrored glyphs with 3 blurs and 2 radiances
-    this.glyphFactory.createGlyphs(new int[] {6, 8, 10, 12, 14, 16}, 3, 2, true);
-    // create glyphs of small sizes
-    this.glyphFactory.createMiniGlyphs(new int[] {1, 2, 3, 4, 5, 6, 7, 8});
-    long endTime = System.currentTimeMillis();
-    System.out.println("Katakana glyphs: " + (endTime - startTime));
-
-    startTime = System.currentTimeMillis();
-    this.abcGlyphFactory = new GlyphFactory(abcGlyphImg, 40, null);
-    // create unmirrored glyphs with 2 blurs and 1 radiances
-    this.abcGlyphFactory.createGlyphs(new int[] {}, 2, 1, false);
-    // compute segments
-    this.abcGlyphFactory.computeGlyphSegments();
-    endTime = System.currentTimeMillis();
-    System.out.println("English glyphs: " + (endTime - startTime));
+    this.glyphFactory = GlyphFactories.createRainGlyphFactory();
+    this.abcGlyphFactory = GlyphFactories.createTitleGlyphFactory();
 
     DropManager dropManager = new DropManager(this.glyphFactory, this.appWidth, this.appHeight);
     dropManager.createDrops();
@@ -129,12 +127,15 @@ public final class MatrixPanel extends JPanel implements Runnable {
             this.mainImage,
             this.quizPainter.introColorManager,
             this.glyphFactory);
+    this.introManager.setFrameStats(this.frameStats);
+    this.rainMetrics.setIntroManager(this.introManager);
+    this.rainMetrics.setGlyphFactories(this.glyphFactory, this.abcGlyphFactory);
 
     Calendar rightNow = Calendar.getInstance();
     System.out.println("Starting animation ... (" + rightNow.getTime().toString() + ")");
     this.message = "Creating animation sequence...";
 
-    repaint();
+    presentFrame();
     return true;
   }
 
@@ -146,7 +147,7 @@ public final class MatrixPanel extends JPanel implements Runnable {
         new TrueColorBitmapObject(
             this.mainImage, this.mainImage.getWidth(null), this.mainImage.getHeight(null));
 
-    repaint();
+    presentFrame();
     return true;
   }
 
@@ -160,30 +161,34 @@ public final class MatrixPanel extends JPanel implements Runnable {
     return "Applet Information: first written by Kirill Grouchnikov , 2000-2003";
   }
 
-  @Override
-  public void repaint() {
-    if (this.quizPainter == null) return;
-    if (this.getGraphics() == null) return;
-    // long time0 = System.currentTimeMillis();
-    this.paint();
-    // long time1 = System.currentTimeMillis();
-    this.quizPainter.recomputeImage();
-    // long time2 = System.currentTimeMillis();
-    Image im = this.quizPainter.getImage();
-    this.getGraphics().drawImage(im, 0, 0, null);
-    // long time3 = System.currentTimeMillis();
-    // System.out.println("repaint: " + (time3-time0));
-    // System.out.println("repaint: " + (time3-time0) + " (" + (time1-time0)
-    // + " + " +
-    // (time2-time1) + " + " + (time3-time2) + ")");
+  // paints the current state on the animation thread, hands it over and lets the EDT show it
+  private void presentFrame() {
+    this.presentFrame(MatrixPainter.CROSS_FADE_STEPS);
+  }
+
+  // newerWeight - cross-fade weight of the latest tick, 0..MatrixPainter.CROSS_FADE_STEPS
+  // @return whether a whole frame has been painted
+  private boolean presentFrame(int newerWeight) {
+    if (this.quizPainter == null) return false;
+    long time0 = System.nanoTime();
+    this.quizPainter.beginFrame();
+    if (!this.renderFrame(newerWeight)) return false;
+    if (SHOW_HUD) {
+      int targetFps =
+          (this.frameScheduler != null) ? this.frameScheduler.getTargetFps() : TARGET_FPS;
+      this.quizPainter.paintHud(this.frameStats, 1_000_000_000L / targetFps);
+    }
+    this.quizPainter.endFrame();
+    this.frameStats.recordSince(FrameStats.STAGE_PRESENT, time0);
+    this.frameStats.frameCompleted();
+    this.repaint();
+    return true;
   }
 
   @Override
   public void update(Graphics g) {
     if (this.quizPainter == null) return;
-    this.paint();
-    this.quizPainter.recomputeImage();
-    g.drawImage(this.quizPainter.getImage(), 0, 0, this);
+    g.drawImage(this.quizPainter.getLatestImage(), 0, 0, this);
   }
 
   @Override
@@ -195,43 +200,57 @@ public final class MatrixPanel extends JPanel implements Runnable {
 
   public void flush(Graphics g) {
     if (this.quizPainter == null) return;
-    // long time0 = System.currentTimeMillis();
-    this.quizPainter.recomputeImage();
-    // long time1 = System.currentTimeMillis();
-    g.drawImage(this.quizPainter.getImage(), 0, 0, null);
-    // long time2 = System.currentTimeMillis();
-    // System.out.println("flush: " + (time2-time0) + " (" + (time1-time0) +
-    // " + " +
-    // (time2-time1) + ")");
+    g.drawImage(this.quizPainter.getLatestImage(), 0, 0, null);
   }
 
-  private void paint() {
-    if (this.quizPainter == null) return;
-
+  // @return whether a whole frame has been painted
+  private boolean renderFrame(int newerWeight) {
     // System.out.println("paint in " + this.stateStack.peek());
 
-    // long t0 = System.currentTimeMillis();
-    // synchronize to prevent paints from separate threads
-    // synchronized (this.quizPainter) {
     switch (this.stateStack.peek()) {
       case STATE_INITIALIZING, STATE_LOADFILES -> {
         this.quizPainter.paintMessage(this.message);
-        return;
+        return true;
       }
       case STATE_INTRO -> {
         if (this.introManager.getState() == IntroManager.STATE_RAINREGULAR)
-          this.quizPainter.paintIntro(this.introManager.getBitmap1D(), this.message);
-        else this.quizPainter.paintIntro(this.introManager.getBitmap1D(), null);
-        return;
+          this.paintIntroFrame(newerWeight, this.message);
+        else this.paintIntroFrame(newerWeight, null);
+        return true;
+      }
+
+      case STATE_REPLAYINTRO -> {
+        this.paintIntroFrame(newerWeight, this.message);
+        return true;
       }
+    }
+    return false;
+  }
+
+  private void paintIntroFrame(int newerWeight, String optionalMessage) {
+    if (this.latestIntroFrame == null)
+      this.quizPainter.paintIntro(this.introManager.getBitmap1D(), optionalMessage);
+    else
+      this.quizPainter.paintIntro(
+          this.previousIntroFrame, this.latestIntroFrame, newerWeight, optionalMessage);
+  }
 
-      case STATE_REPLAYINTRO -> this.quizPainter.paintIntro(
-          this.introManager.getBitmap1D(), this.message);
+  // keeps the frame of this tick, the one of the tick before becomes the previous frame
+  private void captureIntroFrame() {
+    int[] frame = this.introManager.getBitmap1D();
+    if ((this.latestIntroFrame == null) || (this.latestIntroFrame.length != frame.length)) {
+      this.previousIntroFrame = frame.clone();
+      this.latestIntroFrame = frame.clone();
+      return;
     }
-    // long t1 = System.currentTimeMillis();
+    int[] oldest = this.previousIntroFrame;
+    this.previousIntroFrame = this.latestIntroFrame;
+    this.latestIntroFrame = oldest;
+    System.arraycopy(frame, 0, this.latestIntroFrame, 0, frame.length);
   }
 
   private synchronized void iteration() {
+    this.rainMetrics.applyPendingChanges();
     switch (this.stateStack.peek()) {
       case STATE_INTRO, STATE_REPLAYINTRO -> {
         this.introManager.iteration(false);
@@ -251,11 +270,22 @@ public final class MatrixPanel extends JPanel implements Runnable {
           this.stateStack.push(STATE_REPLAYINTRO);
           this.introManager.replay(true);
         }
-        repaint();
+        if (CROSS_FADE) this.captureIntroFrame();
+        this.frameDirty = true;
       }
     }
   }
 
+  // @return whether a frame has been presented
+  private synchronized boolean render(double alpha) {
+    int newerWeight = CROSS_FADE ? MatrixPainter.toCrossFadeWeight(alpha) : 0;
+    // nothing new to show: no tick since the last frame and, cross-fading, the same weight
+    if (!this.frameDirty && (newerWeight == this.presentedWeight)) return false;
+    this.frameDirty = false;
+    this.presentedWeight = newerWeight;
+    return presentFrame(newerWeight);
+  }
+
   /**
    * - Initializes various graphics components
    *
@@ -267,18 +297,18 @@ public final class MatrixPanel extends JPanel implements Runnable {
   public void run() {
     // initialize various graphics components
     if (!initInternal()) {
-      repaint();
+      presentFrame();
       return;
     }
     // download all images
     boolean imagesOK = this.downloadImages();
     if (!imagesOK) {
-      repaint();
+      presentFrame();
       return;
     }
 
     this.stateStack.push(STATE_INTRO);
-    repaint();
+    presentFrame();
 
     // show title in Matrix rain
     this.introManager.showTitle(
@@ -287,25 +317,57 @@ public final class MatrixPanel extends JPanel implements Runnable {
         Math.min(40, this.appHeight / 20),
         this.pcFct,
         this.iFct);
-    repaint();
+    presentFrame();
 
     Thread me = Thread.currentThread();
-    while ((delayManager == me) && (!this.stopRequested)) {
-      long time1 = System.currentTimeMillis();
-      iteration();
-      long time2 = System.currentTimeMillis();
-      try {
-        long timeToSleep = Math.max(0, TIME_DELTA - (time2 - time1));
-        Thread.sleep(timeToSleep);
-      } catch (InterruptedException e) {
-      }
+    this.frameScheduler =
+        new FrameScheduler(TIME_DELTA * 1_000_000L, TARGET_FPS, MAX_TICKS_PER_FRAME);
+    this.rainMetrics.setFrameScheduler(this.frameScheduler);
+    this.frameScheduler.run(
+        () -> (delayManager == me) && (!this.stopRequested),
+        new FrameScheduler.Stage() {
+          @Override
+          public void tick() {
+            iteration();
+          }
+
+          @Override
+          public boolean render(double alpha) {
+            return MatrixPanel.this.render(alpha);
+          }
+        });
+    System.out.println(
+        "Frames: "
+            + this.frameScheduler.getFrameCount()
+            + ", dropped: "
+            + this.frameScheduler.getDroppedFrames()
+            + ", catch-up ticks: "
+            + this.frameScheduler.getCatchUpTicks()
+            + ", dropped ticks: "
+            + this.frameScheduler.getDroppedTicks()
+            + ", mean jitter (us): "
+            + this.frameScheduler.getMeanJitterNanos() / 1000);
+    for (int stage = 0; stage < FrameStats.STAGE_COUNT; stage++) {
+      System.out.println(
+          FrameStats.getStageName(stage)
+              + " p50/p95/p99 (us): "
+              + this.frameStats.getPercentile(stage, 50) / 1000
+              + " / "
+              + this.frameStats.getPercentile(stage, 95) / 1000
+              + " / "
+              + this.frameStats.getPercentile(stage, 99) / 1000);
     }
+    this.rainMetrics.unregister();
   }
 
   public void requestStop() {
     this.stopRequested = true;
   }
 
+  public FrameStats getFrameStats() {
+    return this.frameStats;
+  }
+
   public void setMainImage(Image mainImage) {
     this.mainImage = mainImage;
   }
@@ -24,7 +24,14 @@ package com.github.idelstak.matrixrain.auxiliary.graphics;
 
 import java.awt.Component;
 import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
 import java.awt.image.MemoryImageSource;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
 import com.github.idelstak.matrixrain.auxiliary.math.GaussValues;
@@ -38,52 +45,136 @@ public final class IndexImageManager {
   // off-screen image
   private ColorManager colorManager;
 
-  private short[] ciBitmap;
+  // intensities 0..255, unsigned
+  private final byte[] ciBitmap;
 
+  // colorized frame, allocated on first use
   private int[] bitmap;
 
   private MemoryImageSource baseMImage;
 
   private Image baseImage;
 
+  // every row is split into at most 64 column tiles of 1 << tileShift pixels; bit i of a row mask
+  // marks tile i. Only tiles painted since the last reset are cleared by resetImage, and only those
+  // plus the ones cleared since the last frame are colorized by recomputeImage
+  private final int tileShift;
+
+  private final long[] dirtyTiles;
+
+  // tiles cleared by resetImage that have not been colorized back to the background yet
+  private final long[] staleTiles;
+
+  // whether the next recomputeImage has to colorize every pixel
+  private boolean recomputeAll = true;
+
+  // when set, frames are read through getIndexedImage and recomputeImage does not colorize
+  private boolean indexedOutput;
+
+  // shares ciBitmap as its raster, colorized by the palette of its color model
+  private BufferedImage indexedImage;
+
   public IndexImageManager(
       Component comp, Circle1PixelArbitraryIntersectorFactory iFct, ColorManager colorManager) {
 
-    this.windowWidth = comp.getWidth();
-    this.windowHeight = comp.getHeight();
-    this.bitmap = new int[windowWidth * windowHeight];
-    this.ciBitmap = new short[windowWidth * windowHeight];
+    this(comp.getWidth(), comp.getHeight(), iFct, colorManager);
 
-    for (int i = 0; i < windowWidth * windowHeight; i++) {
-      this.ciBitmap[i] = 0;
-      this.bitmap[i] = 0xFF000000;
-    }
+    this.bitmap = this.createBitmap();
+    baseMImage = new MemoryImageSource(windowWidth, windowHeight, bitmap, 0, windowWidth);
+    baseMImage.setAnimated(true);
+    baseImage = comp.createImage(baseMImage);
+  }
+
+  // off-screen only - no image is created, the result is read through getBitmap1D
+  public IndexImageManager(
+      int windowWidth,
+      int windowHeight,
+      Circle1PixelArbitraryIntersectorFactory iFct,
+      ColorManager colorManager) {
+
+    this.windowWidth = windowWidth;
+    this.windowHeight = windowHeight;
+    this.ciBitmap = new byte[windowWidth * windowHeight];
+    int shift = 5;
+    while (((windowWidth - 1) >> shift) >= 64) shift++;
+    this.tileShift = shift;
+    this.dirtyTiles = new long[windowHeight];
+    this.staleTiles = new long[windowHeight];
 
     this.iFct = iFct;
     this.colorManager = colorManager;
+  }
 
-    baseMImage = new MemoryImageSource(windowWidth, windowHeight, bitmap, 0, windowWidth);
-    baseMImage.setAnimated(true);
-    baseImage = comp.createImage(baseMImage);
+  private int[] createBitmap() {
+    int[] result = new int[this.windowWidth * this.windowHeight];
+    Arrays.fill(result, 0xFF000000);
+    this.recomputeAll = true;
+    return result;
   }
 
   public void resetImage() {
-    for (int i = 0; i < windowWidth * windowHeight; i++) {
-      this.ciBitmap[i] = 0;
-      this.bitmap[i] = 0xFF000000;
+    for (int y = 0; y < this.windowHeight; y++) {
+      long tiles = this.dirtyTiles[y];
+      if (tiles == 0) continue;
+      int rowStart = y * this.windowWidth;
+      for (long rest = tiles; rest != 0; ) {
+        int first = Long.numberOfTrailingZeros(rest);
+        int last = first + Long.numberOfTrailingZeros(~(rest >>> first)) - 1;
+        rest &= ~getTileMask(first, last);
+        Arrays.fill(
+            this.ciBitmap,
+            rowStart + this.getTileLeft(first),
+            rowStart + this.getTileRight(last),
+            (byte) 0);
+      }
+      // the colors of these tiles are stale until the next recomputeImage
+      this.staleTiles[y] |= tiles;
+      this.dirtyTiles[y] = 0;
     }
   }
 
+  private int getTileLeft(int tile) {
+    return tile << this.tileShift;
+  }
+
+  // exclusive
+  private int getTileRight(int tile) {
+    return Math.min(this.windowWidth, (tile + 1) << this.tileShift);
+  }
+
+  private static long getTileMask(int first, int last) {
+    return (-1L >>> (63 - last)) & (-1L << first);
+  }
+
+  private void markDirty(int y, int left, int right) {
+    this.dirtyTiles[y] |= getTileMask(left >> this.tileShift, right >> this.tileShift);
+  }
+
   private void paintPixel(int index, int value) {
-    this.ciBitmap[index] = (short) (Math.max(value, this.ciBitmap[index]));
+    if (value > (this.ciBitmap[index] & 0xFF)) this.ciBitmap[index] = (byte) value;
   }
 
   public void paintPixel(int x, int y, int value) {
     if ((x < 0) || (x >= this.windowWidth)) return;
     if ((y < 0) || (y >= this.windowHeight)) return;
+    this.markDirty(y, x, x);
     this.paintPixel(y * this.windowWidth + x, value);
   }
 
+  // paints length unsigned values starting at (x, y) to the right
+  public void paintSpan(int x, int y, byte[] values, int offset, int length) {
+    if ((y < 0) || (y >= this.windowHeight)) return;
+    int start = Math.max(0, -x);
+    int end = Math.min(length, this.windowWidth - x);
+    if (start >= end) return;
+    this.markDirty(y, x + start, x + end - 1);
+    int index = y * this.windowWidth + x;
+    for (int i = start; i < end; i++) {
+      int value = values[offset + i] & 0xFF;
+      if (value > 0) this.paintPixel(index + i, value);
+    }
+  }
+
   public void paintAAPixel(double x, double y, int value) {
     int iFctN = iFct.N;
 
@@ -99,6 +190,8 @@ public final class IndexImageManager {
     int endRow = (int) Math.ceil(y + w);
     if (endRow >= this.windowHeight) endRow = this.windowHeight - 1;
     int rowN = (int) ((startRow - y) * iFctN);
+    if (startCol <= endCol)
+      for (int row = startRow; row <= endRow; row++) this.markDirty(row, startCol, endCol);
 
     // System.out.println("new pixel");
     for (int newCol = startCol; newCol <= endCol; newCol++) {
@@ -118,17 +211,118 @@ public final class IndexImageManager {
   }
 
   public synchronized void recomputeImage() {
-    // compute actual colors
-    int totalSize = this.windowHeight * this.windowWidth;
-    for (int i = 0; i < totalSize; i++)
-      this.bitmap[i] = colorManager.getColorPresentation((int) (this.ciBitmap[i]));
-    baseMImage.newPixels();
+    // the palette of the indexed image does the colorizing
+    if (this.indexedOutput) return;
+    if (this.bitmap == null) this.bitmap = this.createBitmap();
+    if (this.recomputeAll) {
+      // compute actual colors
+      int totalSize = this.windowHeight * this.windowWidth;
+      for (int i = 0; i < totalSize; i++)
+        this.bitmap[i] = colorManager.getColorPresentation(this.ciBitmap[i] & 0xFF);
+      Arrays.fill(this.staleTiles, 0);
+      this.recomputeAll = false;
+      if (baseMImage != null) baseMImage.newPixels();
+      return;
+    }
+
+    // colorize only what was painted in this frame or cleared since the last one
+    int top = this.windowHeight, bottom = -1;
+    long allTiles = 0;
+    for (int y = 0; y < this.windowHeight; y++) {
+      long tiles = this.dirtyTiles[y] | this.staleTiles[y];
+      if (tiles == 0) continue;
+      int rowStart = y * this.windowWidth;
+      for (long rest = tiles; rest != 0; ) {
+        int first = Long.numberOfTrailingZeros(rest);
+        int last = first + Long.numberOfTrailingZeros(~(rest >>> first)) - 1;
+        rest &= ~getTileMask(first, last);
+        int end = rowStart + this.getTileRight(last);
+        for (int i = rowStart + this.getTileLeft(first); i < end; i++)
+          this.bitmap[i] = colorManager.getColorPresentation(this.ciBitmap[i] & 0xFF);
+      }
+      this.staleTiles[y] = 0;
+      if (top > y) top = y;
+      bottom = y;
+      allTiles |= tiles;
+    }
+    if ((baseMImage != null) && (bottom >= top)) {
+      int left = this.getTileLeft(Long.numberOfTrailingZeros(allTiles));
+      int right = this.getTileRight(63 - Long.numberOfLeadingZeros(allTiles));
+      baseMImage.newPixels(left, top, right - left, bottom - top + 1);
+    }
   }
 
+  // not kept up to date while the output is indexed
   public synchronized int[] getBitmap1D() {
+    if (this.bitmap == null) {
+      this.bitmap = this.createBitmap();
+      int totalSize = this.windowHeight * this.windowWidth;
+      for (int i = 0; i < totalSize; i++)
+        this.bitmap[i] = colorManager.getColorPresentation(this.ciBitmap[i] & 0xFF);
+    }
     return this.bitmap;
   }
 
+  /**
+   * Switches between colorizing every frame into the ARGB bitmap and leaving the intensities as
+   * they are, to be shown through {@link #getIndexedImage()}.
+   */
+  public synchronized void setIndexedOutput(boolean indexedOutput) {
+    if (this.indexedOutput == indexedOutput) return;
+    this.indexedOutput = indexedOutput;
+    // the ARGB bitmap missed every frame painted in the meantime
+    if (!indexedOutput) this.recomputeAll = true;
+  }
+
+  public synchronized boolean isIndexedOutput() {
+    return this.indexedOutput;
+  }
+
+  /**
+   * @return 8-bit image backed by the intensity map itself, with the palette of the color manager;
+   *     it shows whatever has been painted so far, without any recomputeImage
+   */
+  public synchronized BufferedImage getIndexedImage() {
+    if (this.indexedImage == null) {
+      DataBufferByte dataBuffer = new DataBufferByte(this.ciBitmap, this.ciBitmap.length);
+      WritableRaster raster =
+          Raster.createInterleavedRaster(
+              dataBuffer,
+              this.windowWidth,
+              this.windowHeight,
+              this.windowWidth,
+              1,
+              new int[] {0},
+              null);
+      this.indexedImage =
+          new BufferedImage(createColorModel(this.colorManager), raster, false, null);
+    }
+    return this.indexedImage;
+  }
+
+  /**
+   * Replaces the palette. For the indexed image this only swaps its 256-entry color model, so it is
+   * cheap enough to be done on every frame (e.g. for color cycling).
+   */
+  public synchronized void setColorManager(ColorManager colorManager) {
+    this.colorManager = colorManager;
+    this.recomputeAll = true;
+    if (this.indexedImage != null)
+      this.indexedImage =
+          new BufferedImage(
+              createColorModel(colorManager), this.indexedImage.getRaster(), false, null);
+  }
+
+  public ColorManager getColorManager() {
+    return this.colorManager;
+  }
+
+  public static IndexColorModel createColorModel(ColorManager colorManager) {
+    int[] palette = new int[256];
+    for (int i = 0; i < 256; i++) palette[i] = colorManager.getColorPresentation(i);
+    return new IndexColorModel(8, 256, palette, 0, false, -1, DataBuffer.TYPE_BYTE);
+  }
+
   public synchronized Image getImage() {
     return baseImage;
   }
@@ -136,7 +330,8 @@ public final class IndexImageManager {
   public int[][] getAsBitmap() {
     int[][] finalBitmap = new int[windowWidth][windowHeight];
     for (int i = 0; i < windowWidth; i++)
-      for (int j = 0; j < windowHeight; j++) finalBitmap[i][j] = this.ciBitmap[j * windowWidth + i];
+      for (int j = 0; j < windowHeight; j++)
+        finalBitmap[i][j] = this.ciBitmap[j * windowWidth + i] & 0xFF;
     return finalBitmap;
   }
 
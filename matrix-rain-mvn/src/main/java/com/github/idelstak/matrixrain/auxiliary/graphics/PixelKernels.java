@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.auxiliary.graphics;
+
+/**
+ * Bulk versions of the per-pixel operations of {@link TrueColorBitmapManager}, applied to spans of
+ * ARGB pixels: the source span is combined into the destination span pixel by pixel, exactly as the
+ * per-pixel methods do.
+ *
+ * <p>The Vector API implementation is used when the <code>jdk.incubator.vector</code> module has
+ * been added to the VM (<code>--add-modules jdk.incubator.vector</code>) and <code>
+ * matrixrain.vector</code> is not <code>off</code>; otherwise the scalar one.
+ */
+public abstract class PixelKernels {
+  /** Full weight of {@link #lerp(int[], int[], int[], int, int)}. */
+  public static final int LERP_ONE = 256;
+
+  private static final PixelKernels scalar = new ScalarPixelKernels();
+
+  private static final PixelKernels instance = create();
+
+  PixelKernels() {}
+
+  private static PixelKernels create() {
+    if ("off".equals(System.getProperty("matrixrain.vector"))) return scalar;
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return scalar;
+    // only built by the vector profile
+    if (PixelKernels.class.getResource("VectorPixelKernels.class") == null) return scalar;
+    try {
+      return (PixelKernels)
+          Class.forName("com.github.idelstak.matrixrain.auxiliary.graphics.VectorPixelKernels")
+              .getDeclaredConstructor()
+              .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      System.err.println("Vector pixel kernels not available, using scalar: " + e);
+      return scalar;
+    }
+  }
+
+  /** @return the fastest implementation available in this VM */
+  public static PixelKernels getInstance() {
+    return instance;
+  }
+
+  public static PixelKernels getScalar() {
+    return scalar;
+  }
+
+  public abstract String getName();
+
+  /** Per channel maximum, the result is opaque (as in paintPixel). */
+  public abstract void max(int[] src, int srcOffset, int[] dst, int dstOffset, int length);
+
+  /** Source alpha added on top of the destination alpha (as in overlayPixel). */
+  public abstract void overlay(int[] src, int srcOffset, int[] dst, int dstOffset, int length);
+
+  /** Cross-fade weighted by the alpha of both sides (as in blendPixel), alpha in 0.0..1.0. */
+  public abstract void blend(
+      int[] src, int srcOffset, int[] dst, int dstOffset, int length, double alphaCoef);
+
+  /**
+   * Linear interpolation of every channel, alpha included: weight 0 gives {@code older}, {@link
+   * #LERP_ONE} gives {@code newer}.
+   */
+  public void lerp(int[] older, int[] newer, int[] dst, int length, int newerWeight) {
+    int olderWeight = LERP_ONE - newerWeight;
+    for (int i = 0; i < length; i++) {
+      int o = older[i];
+      int n = newer[i];
+      // red and blue, then alpha and green, two channels per multiply
+      int rb = (((o & 0xff00ff) * olderWeight + (n & 0xff00ff) * newerWeight) >>> 8) & 0xff00ff;
+      int ag =
+          (((o >>> 8) & 0xff00ff) * olderWeight + ((n >>> 8) & 0xff00ff) * newerWeight)
+              & 0xff00ff00;
+      dst[i] = ag | rb;
+    }
+  }
+
+  public void overwrite(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+    System.arraycopy(src, srcOffset, dst, dstOffset, length);
+  }
+}
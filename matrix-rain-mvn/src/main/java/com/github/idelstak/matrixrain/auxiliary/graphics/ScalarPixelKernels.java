@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.auxiliary.graphics;
+
+import com.github.idelstak.matrixrain.auxiliary.math.FixedPoint;
+
+/** One pixel at a time; also the reference for the per-pixel methods of the bitmap managers. */
+class ScalarPixelKernels extends PixelKernels {
+
+  static int max(int oldValue, int RGBvalue) {
+    int oldR = (oldValue & 0x00FF0000) >> 16;
+    int oldG = (oldValue & 0x0000FF00) >> 8;
+    int oldB = (oldValue & 0x000000FF);
+
+    int newR = (RGBvalue & 0x00FF0000) >> 16;
+    int newG = (RGBvalue & 0x0000FF00) >> 8;
+    int newB = (RGBvalue & 0x000000FF);
+
+    int resR = (newR > oldR) ? newR : oldR;
+    int resG = (newG > oldG) ? newG : oldG;
+    int resB = (newB > oldB) ? newB : oldB;
+
+    return (255 << 24) | (resR << 16) | (resG << 8) | resB;
+  }
+
+  // intensity in 16.16, the scaled colour is not clamped
+  static int max(int oldValue, int RGBvalue, int intensity) {
+    int oldR = (oldValue & 0x00FF0000) >> 16;
+    int oldG = (oldValue & 0x0000FF00) >> 8;
+    int oldB = (oldValue & 0x000000FF);
+
+    int newR = (((RGBvalue & 0x00FF0000) >> 16) * intensity) >> FixedPoint.SHIFT;
+    int newG = (((RGBvalue & 0x0000FF00) >> 8) * intensity) >> FixedPoint.SHIFT;
+    int newB = ((RGBvalue & 0x000000FF) * intensity) >> FixedPoint.SHIFT;
+
+    int resR = (newR > oldR) ? newR : oldR;
+    int resG = (newG > oldG) ? newG : oldG;
+    int resB = (newB > oldB) ? newB : oldB;
+
+    return (255 << 24) | (resR << 16) | (resG << 8) | resB;
+  }
+
+  // intensity in 0..255
+  static int overlay(int oldValue, int newR, int newG, int newB, int intensity) {
+    if (intensity == 0) return oldValue;
+
+    int oldR = (oldValue & 0x00FF0000) >> 16;
+    int oldG = (oldValue & 0x0000FF00) >> 8;
+    int oldB = (oldValue & 0x000000FF);
+    int oldIntensity = (oldValue & 0xFF000000) >>> 24;
+
+    int totalIntensity = oldIntensity + intensity;
+    if (totalIntensity > 255) {
+      oldIntensity = 255 - intensity;
+      totalIntensity = 255;
+    }
+
+    int resR = FixedPoint.divide(oldR * oldIntensity + newR * intensity, totalIntensity);
+    int resG = FixedPoint.divide(oldG * oldIntensity + newG * intensity, totalIntensity);
+    int resB = FixedPoint.divide(oldB * oldIntensity + newB * intensity, totalIntensity);
+
+    return (totalIntensity << 24) | (resR << 16) | (resG << 8) | resB;
+  }
+
+  static int overlay(int oldValue, int RGBAvalue) {
+    int newIntensity = (RGBAvalue & 0xFF000000) >>> 24;
+    int newR = (RGBAvalue & 0x00FF0000) >> 16;
+    int newG = (RGBAvalue & 0x0000FF00) >> 8;
+    int newB = (RGBAvalue & 0x000000FF);
+
+    return overlay(oldValue, newR, newG, newB, newIntensity);
+  }
+
+  // alphaCoef:
+  // oldIntensity - (0.0..0.5)->oldIntensity, 1.0->0.0
+  // newIntensity - 0.0->0.0, (0.5..1.0)->newIntensity
+  // a factor strictly between 0.0 and 1.0 never rounds to 0, that would drop its side entirely
+  static int getOldBlendFactor(double alphaCoef) {
+    if (alphaCoef <= 0.5) return FixedPoint.ONE;
+    if (alphaCoef >= 1.0) return 0;
+    return Math.max(1, FixedPoint.fromDouble(2.0 - 2.0 * alphaCoef));
+  }
+
+  static int getNewBlendFactor(double alphaCoef) {
+    if (alphaCoef >= 0.5) return FixedPoint.ONE;
+    if (alphaCoef <= 0.0) return 0;
+    return Math.max(1, FixedPoint.fromDouble(alphaCoef / 0.5));
+  }
+
+  static int blend(int oldValue, int RGBAvalue, double alphaCoef) {
+    return blend(oldValue, RGBAvalue, getOldBlendFactor(alphaCoef), getNewBlendFactor(alphaCoef));
+  }
+
+  // factors in 16.16, as returned by getOldBlendFactor / getNewBlendFactor
+  static int blend(int oldValue, int RGBAvalue, int oldFactor, int newFactor) {
+    int newIntensityAbs = (RGBAvalue & 0xFF000000) >>> 24;
+    if (newIntensityAbs == 0) return oldValue;
+
+    int oldR = (oldValue & 0x00FF0000) >> 16;
+    int oldG = (oldValue & 0x0000FF00) >> 8;
+    int oldB = (oldValue & 0x000000FF);
+
+    int newR = (RGBAvalue & 0x00FF0000) >> 16;
+    int newG = (RGBAvalue & 0x0000FF00) >> 8;
+    int newB = (RGBAvalue & 0x000000FF);
+
+    // alpha (0..255) times factor, below 2^24 each
+    int oldWeight = ((oldValue & 0xFF000000) >>> 24) * oldFactor;
+    int newWeight = newIntensityAbs * newFactor;
+    int totalWeight = oldWeight + newWeight;
+    if (totalWeight == 0) return 0;
+
+    // 256 * total intensity, where the intensities are alpha / 255
+    int totalIntensityAbs = totalWeight / (255 << (FixedPoint.SHIFT - 8));
+    if (totalIntensityAbs > 255) totalIntensityAbs = 255;
+
+    // drop the low bits so that the divisor fits the reciprocal table
+    int shift = 32 - Integer.numberOfLeadingZeros(totalWeight) - 12;
+    if (shift > 0) {
+      oldWeight >>= shift;
+      newWeight >>= shift;
+      totalWeight = oldWeight + newWeight;
+    }
+
+    int resR = FixedPoint.divide(oldR * oldWeight + newR * newWeight, totalWeight);
+    int resG = FixedPoint.divide(oldG * oldWeight + newG * newWeight, totalWeight);
+    int resB = FixedPoint.divide(oldB * oldWeight + newB * newWeight, totalWeight);
+
+    return (totalIntensityAbs << 24) | (resR << 16) | (resG << 8) | resB;
+  }
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void max(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+    for (int i = 0; i < length; i++)
+      dst[dstOffset + i] = max(dst[dstOffset + i], src[srcOffset + i]);
+  }
+
+  @Override
+  public void overlay(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+    for (int i = 0; i < length; i++)
+      dst[dstOffset + i] = overlay(dst[dstOffset + i], src[srcOffset + i]);
+  }
+
+  @Override
+  public void blend(
+      int[] src, int srcOffset, int[] dst, int dstOffset, int length, double alphaCoef) {
+    int oldFactor = getOldBlendFactor(alphaCoef);
+    int newFactor = getNewBlendFactor(alphaCoef);
+    for (int i = 0; i < length; i++)
+      dst[dstOffset + i] = blend(dst[dstOffset + i], src[srcOffset + i], oldFactor, newFactor);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.auxiliary.graphics;
+
+import java.awt.Image;
+import java.awt.image.PixelGrabber;
+
+import com.github.idelstak.matrixrain.auxiliary.graphics.geom.edgedetection.EdgeDetector;
+
+/**
+ * Everything the intro stages derive from their source image, computed once per image: the ARGB
+ * pixels, their luminosities, the luminosity histogram and, on first request, the edge maps.
+ *
+ * <p>The arrays are shared by all stages and must not be modified. Pixels and luminosities are
+ * stored one column after the other: pixel (x, y) is at x * height + y.
+ */
+public final class SourceImageAnalysis {
+  private final int width, height;
+
+  private final int[] pixels;
+
+  private final byte[] luminosities;
+
+  private final int[] histogram;
+
+  private int maxLuminosity;
+
+  private double averageLuminosity;
+
+  private final int[][] edgeMaps;
+
+  public SourceImageAnalysis(Image image, int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.pixels = new int[width * height];
+    this.luminosities = new byte[width * height];
+    this.histogram = new int[256];
+    this.edgeMaps = new int[3][];
+
+    int[] origPixels = new int[width * height];
+    PixelGrabber pg = new PixelGrabber(image, 0, 0, width, height, origPixels, 0, width);
+    try {
+      pg.grabPixels();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.err.println("Could not grab the source image, using a black one");
+    }
+    if ((pg.getStatus() & java.awt.image.ImageObserver.ABORT) != 0)
+      System.err.println("Could not grab the source image, using a black one");
+
+    long luminositySum = 0;
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+        int pixel = x * height + y;
+        int trueColor = origPixels[y * width + x];
+        this.pixels[pixel] = trueColor;
+
+        int red = (trueColor & 0x00FF0000) >> 16;
+        int green = (trueColor & 0x0000FF00) >> 8;
+        int blue = trueColor & 0x000000FF;
+        int luminosity = (222 * red + 707 * green + 71 * blue) / 1000;
+        this.luminosities[pixel] = (byte) luminosity;
+        this.histogram[luminosity]++;
+        luminositySum += luminosity;
+        if (luminosity > this.maxLuminosity) this.maxLuminosity = luminosity;
+      }
+    }
+    this.averageLuminosity = (double) luminositySum / (width * height);
+  }
+
+  public int getWidth() {
+    return this.width;
+  }
+
+  public int getHeight() {
+    return this.height;
+  }
+
+  /** @return the ARGB pixels, pixel (x, y) at x * height + y */
+  public int[] getPixels() {
+    return this.pixels;
+  }
+
+  /** @return the unsigned pixel luminosities 0..255, pixel (x, y) at x * height + y */
+  public byte[] getLuminosities() {
+    return this.luminosities;
+  }
+
+  /** @return the number of pixels by luminosity */
+  public int[] getHistogram() {
+    return this.histogram;
+  }
+
+  public int getMaxLuminosity() {
+    return this.maxLuminosity;
+  }
+
+  public double getAverageLuminosity() {
+    return this.averageLuminosity;
+  }
+
+  /**
+   * @return the lowest luminosity such that more than the given fraction of all pixels is at most
+   *     that bright, 255 if there is none
+   */
+  public int getCutoffLuminosity(double fraction) {
+    int cutoffThreshold = (int) (this.width * this.height * fraction);
+    int cutoffSum = 0;
+    for (int i = 0; i < this.histogram.length; i++) {
+      cutoffSum += this.histogram[i];
+      if (cutoffSum > cutoffThreshold) return i;
+    }
+    return 255;
+  }
+
+  /**
+   * @param kind one of EdgeDetector.EDGES_STRONG, EDGES_MEDIUM and EDGES_SOFT
+   * @return the edge values, pixel (x, y) at y * width + x like EdgeDetector.getValueMap
+   */
+  public synchronized int[] getEdgeMap(int kind) {
+    if (this.edgeMaps[kind] == null)
+      this.edgeMaps[kind] =
+          new EdgeDetector(this.width, this.height, this.luminosities).getValueMap(kind);
+    return this.edgeMaps[kind];
+  }
+
+  /** @return a new bitmap of the source image that the caller is free to modify */
+  public TrueColorBitmapObject createBitmap() {
+    int[][] bitmap = new int[this.width][this.height];
+    for (int x = 0; x < this.width; x++)
+      System.arraycopy(this.pixels, x * this.height, bitmap[x], 0, this.height);
+    return new TrueColorBitmapObject(bitmap, this.width, this.height);
+  }
+}
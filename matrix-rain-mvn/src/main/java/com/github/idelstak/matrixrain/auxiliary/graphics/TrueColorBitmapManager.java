@@ -26,6 +26,7 @@ import java.awt.Color;
 
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.interpolator.ColorInterpolator;
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
+import com.github.idelstak.matrixrain.auxiliary.math.FixedPoint;
 import com.github.idelstak.matrixrain.auxiliary.math.GaussValues;
 import com.github.idelstak.matrixrain.auxiliary.math.coord.Point2D;
 import com.github.idelstak.matrixrain.auxiliary.math.coord.Polygon2D;
@@ -49,6 +50,12 @@ public class TrueColorBitmapManager {
 
   int[][] iTmp;
 
+  // bulk operations over whole rows
+  private PixelKernels pixelKernels = PixelKernels.getInstance();
+
+  // one row of a column-major source bitmap, gathered for the pixel kernels
+  private int[] rowBuffer = new int[0];
+
   public TrueColorBitmapManager(int width, int height) {
     this.width = width;
     this.height = height;
@@ -104,94 +111,22 @@ public class TrueColorBitmapManager {
   }
 
   protected void paintPixel(int index, int RGBvalue) {
-    int oldValue = this.bitmap[index];
-
-    int oldR = (oldValue & 0x00FF0000) >> 16;
-    int oldG = (oldValue & 0x0000FF00) >> 8;
-    int oldB = (oldValue & 0x000000FF);
-
-    int newR = (RGBvalue & 0x00FF0000) >> 16;
-    int newG = (RGBvalue & 0x0000FF00) >> 8;
-    int newB = (RGBvalue & 0x000000FF);
-
-    int resR = (newR > oldR) ? newR : oldR;
-    int resG = (newG > oldG) ? newG : oldG;
-    int resB = (newB > oldB) ? newB : oldB;
-
-    int newValue = (255 << 24) | (resR << 16) | (resG << 8) | resB;
-
-    this.bitmap[index] = newValue;
+    this.bitmap[index] = ScalarPixelKernels.max(this.bitmap[index], RGBvalue);
   }
 
   protected void paintPixel(int index, int RGBvalue, double intensity) {
-    int oldValue = this.bitmap[index];
-
-    int oldR = (oldValue & 0x00FF0000) >> 16;
-    int oldG = (oldValue & 0x0000FF00) >> 8;
-    int oldB = (oldValue & 0x000000FF);
-
-    int newR = (RGBvalue & 0x00FF0000) >> 16;
-    int newG = (RGBvalue & 0x0000FF00) >> 8;
-    int newB = (RGBvalue & 0x000000FF);
-
-    newR = (int) (intensity * newR);
-    newG = (int) (intensity * newG);
-    newB = (int) (intensity * newB);
-
-    int resR = (newR > oldR) ? newR : oldR;
-    int resG = (newG > oldG) ? newG : oldG;
-    int resB = (newB > oldB) ? newB : oldB;
-
-    int newValue = (255 << 24) | (resR << 16) | (resG << 8) | resB;
-
-    this.bitmap[index] = newValue;
+    this.bitmap[index] =
+        ScalarPixelKernels.max(this.bitmap[index], RGBvalue, FixedPoint.fromDouble(intensity));
   }
 
   // intensity in 0..255
   protected void overlayPixel(int index, int newR, int newG, int newB, int intensity) {
-    if (intensity == 0) return;
-
-    int oldValue = this.bitmap[index];
-
-    // System.out.print("at (" + (index%this.width) + ", " +
-    // (index/this.width) + ") ");
-
-    int oldR = (oldValue & 0x00FF0000) >> 16;
-    int oldG = (oldValue & 0x0000FF00) >> 8;
-    int oldB = (oldValue & 0x000000FF);
-    double oldIntensity = ((oldValue & 0xFF000000) >>> 24) / 255.0;
-
-    // System.out.print(", intens was " + oldIntensity);
-
-    // System.out.print(", new intens " + newIntensityAbs);
-
-    double newIntensity = intensity / 255.0;
-
-    double totalIntensity = oldIntensity + newIntensity;
-    if (totalIntensity > 1.0) {
-      oldIntensity = 1.0 - newIntensity;
-      totalIntensity = 1.0;
-    }
-
-    int resR = (int) ((oldR * oldIntensity + newR * newIntensity) / totalIntensity);
-    int resG = (int) ((oldG * oldIntensity + newG * newIntensity) / totalIntensity);
-    int resB = (int) ((oldB * oldIntensity + newB * newIntensity) / totalIntensity);
-
-    int totalIntensityAbs = (int) (256.0 * totalIntensity);
-    if (totalIntensityAbs > 255) totalIntensityAbs = 255;
-
-    int newValue = (totalIntensityAbs << 24) | (resR << 16) | (resG << 8) | resB;
-
-    this.bitmap[index] = newValue;
+    this.bitmap[index] =
+        ScalarPixelKernels.overlay(this.bitmap[index], newR, newG, newB, intensity);
   }
 
   protected void overlayPixel(int index, int RGBAvalue) {
-    int newIntensity = (RGBAvalue & 0xFF000000) >>> 24;
-    int newR = (RGBAvalue & 0x00FF0000) >> 16;
-    int newG = (RGBAvalue & 0x0000FF00) >> 8;
-    int newB = (RGBAvalue & 0x000000FF);
-
-    this.overlayPixel(index, newR, newG, newB, newIntensity);
+    this.bitmap[index] = ScalarPixelKernels.overlay(this.bitmap[index], RGBAvalue);
   }
 
   protected void overlayPixel(int x, int y, int r, int g, int b, int intensity) {
@@ -207,56 +142,7 @@ public class TrueColorBitmapManager {
   }
 
   protected void blendPixel(int index, int RGBAvalue, double alphaCoef) {
-    int oldValue = this.bitmap[index];
-
-    // System.out.print("at (" + (index%this.width) + ", " +
-    // (index/this.width) + ") ");
-
-    int oldR = (oldValue & 0x00FF0000) >> 16;
-    int oldG = (oldValue & 0x0000FF00) >> 8;
-    int oldB = (oldValue & 0x000000FF);
-
-    double oldIntensity = ((oldValue & 0xFF000000) >>> 24) / 255.0;
-
-    // System.out.print(", intens was " + oldIntensity);
-
-    int newIntensityAbs = (RGBAvalue & 0xFF000000) >>> 24;
-
-    if (newIntensityAbs == 0) {
-      // System.out.println();
-      return;
-    }
-
-    double newIntensity = newIntensityAbs / 255.0;
-    // System.out.print(", new intens " + newIntensity);
-
-    int newR = (RGBAvalue & 0x00FF0000) >> 16;
-    int newG = (RGBAvalue & 0x0000FF00) >> 8;
-    int newB = (RGBAvalue & 0x000000FF);
-
-    // alphaCoef:
-    // oldIntensity - (0.0..0.5)->oldIntensity, 1.0->0.0
-    // newIntensity - 0.0->0.0, (0.5..1.0)->newIntensity
-    if (alphaCoef > 0.5) oldIntensity *= (2.0 - 2.0 * alphaCoef);
-    if (alphaCoef < 0.5) newIntensity *= (alphaCoef / 0.5);
-    // System.out.print("old: " + oldIntensity);
-    // System.out.print(", new " + newIntensity);
-
-    double totalIntensity = oldIntensity + newIntensity;
-
-    int resR = (int) ((oldR * oldIntensity + newR * newIntensity) / totalIntensity);
-    int resG = (int) ((oldG * oldIntensity + newG * newIntensity) / totalIntensity);
-    int resB = (int) ((oldB * oldIntensity + newB * newIntensity) / totalIntensity);
-
-    int totalIntensityAbs = (int) (256.0 * totalIntensity);
-    if (totalIntensityAbs > 255) totalIntensityAbs = 255;
-
-    // System.out.println("IRGB: (" + totalIntensityAbs + ", " + resR + ", "
-    // +
-    // resG + ", " + resB + ")");
-    int newValue = (totalIntensityAbs << 24) | (resR << 16) | (resG << 8) | resB;
-
-    this.bitmap[index] = newValue;
+    this.bitmap[index] = ScalarPixelKernels.blend(this.bitmap[index], RGBAvalue, alphaCoef);
   }
 
   // alpha 0.0-1.0
@@ -289,81 +175,127 @@ public class TrueColorBitmapManager {
     this.overwritePixel(y * this.width + x, RGBvalue);
   }
 
+  private interface SpanOperation {
+    void apply(int[] row, int[] bitmap, int offset, int length);
+  }
+
+  // gathers the rows of a column-major source rectangle and hands the part of every row that lands
+  // inside this bitmap to the operation
+  private void applyRows(
+      int[][] pixels,
+      int sourceLeft,
+      int sourceTop,
+      int width,
+      int height,
+      int destinationLeft,
+      int destinationTop,
+      SpanOperation operation) {
+    int startX = Math.max(0, -destinationLeft);
+    int endX = Math.min(width, this.width - destinationLeft);
+    int startY = Math.max(0, -destinationTop);
+    int endY = Math.min(height, this.height - destinationTop);
+    int length = endX - startX;
+    if (length <= 0) return;
+    if (this.rowBuffer.length < length) this.rowBuffer = new int[length];
+    int[] row = this.rowBuffer;
+    for (int y = startY; y < endY; y++) {
+      for (int x = 0; x < length; x++) row[x] = pixels[sourceLeft + startX + x][sourceTop + y];
+      int offset = (destinationTop + y) * this.width + destinationLeft + startX;
+      operation.apply(row, this.bitmap, offset, length);
+    }
+  }
+
   public void blendTrueColorObject(TrueColorBitmapObject bitmapObject, double alphaCoef) {
-    int[][] pixels = bitmapObject.getBitmap();
-    for (int i = 0; i < this.width; i++)
-      for (int j = 0; j < this.height; j++)
-        this.blendPixel(j * this.width + i, pixels[i][j], alphaCoef);
+    this.blendTrueColorObject(bitmapObject, this.width, this.height, 0, 0, alphaCoef);
   }
 
   public void blendTrueColorObject(
       TrueColorBitmapObject bitmap, int destinationLeft, int destinationTop, double alphaCoef) {
+    this.blendTrueColorObject(
+        bitmap, bitmap.getWidth(), bitmap.getHeight(), destinationLeft, destinationTop, alphaCoef);
+  }
 
-    int[][] pixels = bitmap.getBitmap();
-    int width = bitmap.getWidth();
-    int height = bitmap.getHeight();
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        this.blendPixel(destinationLeft + i, destinationTop + j, pixels[i][j], alphaCoef);
-      }
-    }
+  private void blendTrueColorObject(
+      TrueColorBitmapObject bitmap,
+      int width,
+      int height,
+      int destinationLeft,
+      int destinationTop,
+      double alphaCoef) {
+    PixelKernels kernels = this.pixelKernels;
+    this.applyRows(
+        bitmap.getBitmap(),
+        0,
+        0,
+        width,
+        height,
+        destinationLeft,
+        destinationTop,
+        (row, pixels, offset, length) -> kernels.blend(row, 0, pixels, offset, length, alphaCoef));
   }
 
   public void overwriteTrueColorObject(TrueColorBitmapObject bitmapObject) {
-    int[][] pixels = bitmapObject.getBitmap();
-    for (int i = 0; i < this.width; i++)
-      for (int j = 0; j < this.height; j++) this.overwritePixel(j * this.width + i, pixels[i][j]);
+    this.paintTrueColorObject(bitmapObject, 0, 0, this.width, this.height, 0, 0);
   }
 
   public void overwriteTrueColorObject(
       TrueColorBitmapObject bitmap, int destinationLeft, int destinationTop) {
-
-    int[][] pixels = bitmap.getBitmap();
-    int width = bitmap.getWidth();
-    int height = bitmap.getHeight();
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        this.overwritePixel(destinationLeft + i, destinationTop + j, pixels[i][j]);
-      }
-    }
+    this.paintTrueColorObject(
+        bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), destinationLeft, destinationTop);
   }
 
   public void overlayTrueColorObject(TrueColorBitmapObject bitmapObject) {
-    int[][] pixels = bitmapObject.getBitmap();
-    for (int i = 0; i < this.width; i++)
-      for (int j = 0; j < this.height; j++) this.overlayPixel(j * this.width + i, pixels[i][j]);
+    PixelKernels kernels = this.pixelKernels;
+    this.applyRows(
+        bitmapObject.getBitmap(),
+        0,
+        0,
+        this.width,
+        this.height,
+        0,
+        0,
+        (row, pixels, offset, length) -> kernels.overlay(row, 0, pixels, offset, length));
   }
 
   public void overlayTrueColorObject(
       TrueColorBitmapObject bitmap, int destinationLeft, int destinationTop) {
-
-    int[][] pixels = bitmap.getBitmap();
-    int width = bitmap.getWidth();
-    int height = bitmap.getHeight();
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        this.overlayPixel(destinationLeft + i, destinationTop + j, pixels[i][j]);
-      }
-    }
+    PixelKernels kernels = this.pixelKernels;
+    this.applyRows(
+        bitmap.getBitmap(),
+        0,
+        0,
+        bitmap.getWidth(),
+        bitmap.getHeight(),
+        destinationLeft,
+        destinationTop,
+        (row, pixels, offset, length) -> kernels.overlay(row, 0, pixels, offset, length));
   }
 
   public void paintTrueColorObject(TrueColorBitmapObject bitmapObject) {
-    int[][] pixels = bitmapObject.getBitmap();
-    for (int i = 0; i < this.width; i++)
-      for (int j = 0; j < this.height; j++) this.paintPixel(j * this.width + i, pixels[i][j]);
+    PixelKernels kernels = this.pixelKernels;
+    this.applyRows(
+        bitmapObject.getBitmap(),
+        0,
+        0,
+        this.width,
+        this.height,
+        0,
+        0,
+        (row, pixels, offset, length) -> kernels.max(row, 0, pixels, offset, length));
   }
 
   public void paintTrueColorObject(
       TrueColorBitmapObject bitmap, int destinationLeft, int destinationTop) {
-
-    int[][] pixels = bitmap.getBitmap();
-    int width = bitmap.getWidth();
-    int height = bitmap.getHeight();
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        this.paintPixel(destinationLeft + i, destinationTop + j, pixels[i][j]);
-      }
-    }
+    PixelKernels kernels = this.pixelKernels;
+    this.applyRows(
+        bitmap.getBitmap(),
+        0,
+        0,
+        bitmap.getWidth(),
+        bitmap.getHeight(),
+        destinationLeft,
+        destinationTop,
+        (row, pixels, offset, length) -> kernels.max(row, 0, pixels, offset, length));
   }
 
   public void paintTrueColorObjectExact(TrueColorBitmapObject bitmap) {
@@ -385,26 +317,40 @@ public class TrueColorBitmapManager {
       int sourceBottom,
       int destinationLeft,
       int destinationTop) {
-    /*
-     * System.out.println("Painting bitmap (" + bitmap.getWidth() + "*" +
-     * bitmap.getHeight() + ")'s ( " + sourceLeft + "," + sourceTop + ")-(" +
-     * sourceRight + "," + sourceBottom + ") at (" + destinationLeft + "," +
-     * destinationTop + ")");
-     */
-    int[][] pixels = bitmap.getBitmap();
-    int cx = sourceRight - sourceLeft;
-    int cy = sourceBottom - sourceTop;
-    for (int i = 0; i < cx; i++) {
-      for (int j = 0; j < cy; j++) {
-        this.overwritePixel(
-            destinationLeft + i, destinationTop + j, pixels[sourceLeft + i][sourceTop + j]);
-      }
-    }
+    PixelKernels kernels = this.pixelKernels;
+    this.applyRows(
+        bitmap.getBitmap(),
+        sourceLeft,
+        sourceTop,
+        sourceRight - sourceLeft,
+        sourceBottom - sourceTop,
+        destinationLeft,
+        destinationTop,
+        (row, pixels, offset, length) -> kernels.overwrite(row, 0, pixels, offset, length));
   }
 
   public void overwriteBitmap1D(int[] newBitmap) {
-    int len = newBitmap.length;
-    for (int i = 0; i < len; i++) this.bitmap[i] = newBitmap[i];
+    System.arraycopy(newBitmap, 0, this.bitmap, 0, newBitmap.length);
+  }
+
+  // newerWeight 0-PixelKernels.LERP_ONE
+  public void lerpBitmap1D(int[] olderBitmap, int[] newerBitmap, int newerWeight) {
+    this.pixelKernels.lerp(olderBitmap, newerBitmap, this.bitmap, newerBitmap.length, newerWeight);
+  }
+
+  public void setPixelKernels(PixelKernels pixelKernels) {
+    this.pixelKernels = pixelKernels;
+  }
+
+  public PixelKernels getPixelKernels() {
+    return this.pixelKernels;
+  }
+
+  // retargets all painting to the given array, which must match the dimensions of this manager
+  public void setBitmap(int[] bitmap) {
+    if (bitmap.length != this.totalCount)
+      throw new IllegalArgumentException("bitmap must hold " + this.totalCount + " pixels");
+    this.bitmap = bitmap;
   }
 
   public synchronized int[] getBitmap1D() {
@@ -425,13 +371,14 @@ public class TrueColorBitmapManager {
   protected void paintGlyph(
       MemoryGlyph glyph, int glyphBaselineY, int destinationLeft, int destinationTop, Color color) {
 
-    int dx = glyph.getLeft();
     int dy = glyphBaselineY;
+    int width = glyph.getWidth();
+    byte[] atlas = glyph.getAtlas();
 
-    for (int i = glyph.getLeft(); i <= glyph.getRight(); i++) {
-      for (int j = 0; j < glyph.getSize(); j++) {
-        if (glyph.getPixel(i, j) > 0) {
-          this.overlayPixel(destinationLeft + i - dx, destinationTop + j - dy, color.getRGB());
+    for (int i = 0; i < width; i++) {
+      for (int j = glyph.getTop(); j <= glyph.getBottom(); j++) {
+        if (atlas[glyph.getRowOffset(j) + i] != 0) {
+          this.overlayPixel(destinationLeft + i, destinationTop + j - dy, color.getRGB());
         }
       }
     }
@@ -445,18 +392,20 @@ public class TrueColorBitmapManager {
       ColorInterpolator glyphInterpolator,
       boolean toInvertInterpolation) {
 
-    int dx = glyph.getLeft();
     int dy = glyphBaselineY;
+    int width = glyph.getWidth();
+    byte[] atlas = glyph.getAtlas();
 
-    for (int i = glyph.getLeft(); i <= glyph.getRight(); i++) {
-      for (int j = 0; j < glyph.getSize(); j++) {
-        if (glyph.getPixel(i, j) > 0) {
-          double alpha = (double) glyph.getPixel(i, j) / 255.0;
+    for (int i = 0; i < width; i++) {
+      for (int j = glyph.getTop(); j <= glyph.getBottom(); j++) {
+        int value = atlas[glyph.getRowOffset(j) + i] & 0xFF;
+        if (value > 0) {
+          double alpha = (double) value / 255.0;
           Color color =
               toInvertInterpolation
                   ? glyphInterpolator.getInterpolatedColor(alpha)
                   : glyphInterpolator.getInterpolatedColor(1.0 - alpha);
-          this.blendPixel(destinationLeft + i - dx, destinationTop + j - dy, color.getRGB(), alpha);
+          this.blendPixel(destinationLeft + i, destinationTop + j - dy, color.getRGB(), alpha);
         }
       }
     }
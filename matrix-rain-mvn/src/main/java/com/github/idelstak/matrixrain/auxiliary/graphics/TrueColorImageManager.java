@@ -48,9 +48,14 @@ public final class TrueColorImageManager extends TrueColorBitmapManager {
     baseImage = comp.createImage(baseMImage);
   }
 
+  // off-screen only - no image is created, the result is read through getBitmap1D
+  public TrueColorImageManager(int width, int height) {
+    super(width, height);
+  }
+
   public synchronized void recomputeImage() {
     // compute actual colors
-    baseMImage.newPixels();
+    if (baseMImage != null) baseMImage.newPixels();
   }
 
   public synchronized Image getImage() {
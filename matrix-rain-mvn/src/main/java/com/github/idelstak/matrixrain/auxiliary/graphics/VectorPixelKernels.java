@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.auxiliary.graphics;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API version of the pixel kernels; the tail of every span that does not fill a whole vector
+ * goes through the scalar code.
+ *
+ * <p>Blend and overlay stay scalar: their normalising divide looks up a reciprocal per pixel in
+ * {@link com.github.idelstak.matrixrain.auxiliary.math.FixedPoint}, and a lane-wise version of that
+ * lookup would need a gather, which JDK 17 does not compile to anything faster than the scalar
+ * loop.
+ */
+final class VectorPixelKernels extends ScalarPixelKernels {
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+  private static final int LANES = INTS.length();
+
+  @Override
+  public String getName() {
+    return "vector (" + LANES + " lanes)";
+  }
+
+  @Override
+  public void max(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+    int bound = INTS.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += LANES) {
+      IntVector oldValue = IntVector.fromArray(INTS, dst, dstOffset + i);
+      IntVector newValue = IntVector.fromArray(INTS, src, srcOffset + i);
+      // each channel masked in place still compares as a non-negative int
+      IntVector result =
+          oldValue
+              .and(0xFF0000)
+              .max(newValue.and(0xFF0000))
+              .or(oldValue.and(0xFF00).max(newValue.and(0xFF00)))
+              .or(oldValue.and(0xFF).max(newValue.and(0xFF)))
+              .or(0xFF000000);
+      result.intoArray(dst, dstOffset + i);
+    }
+    for (; i < length; i++)
+      dst[dstOffset + i] = ScalarPixelKernels.max(dst[dstOffset + i], src[srcOffset + i]);
+  }
+}
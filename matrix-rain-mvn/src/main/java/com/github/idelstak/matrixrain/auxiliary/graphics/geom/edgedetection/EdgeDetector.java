@@ -44,8 +44,6 @@ public class EdgeDetector {
   private short[][] bwImPixels;
 
   public EdgeDetector(int width, int height, Image im) {
-    this(new TrueColorBitmapObject(im));
-
     this.width = width;
     this.height = height;
 
@@ -78,6 +76,19 @@ public class EdgeDetector {
     }
   }
 
+  // luminosities 0..255 stored one column after the other: pixel (x, y) is at x * height + y
+  public EdgeDetector(int width, int height, byte[] luminosities) {
+    this.width = width;
+    this.height = height;
+
+    this.bwImPixels = new short[width][height];
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
+        this.bwImPixels[i][j] = (short) (luminosities[i * height + j] & 0xFF);
+      }
+    }
+  }
+
   public EdgeDetector(TrueColorBitmapObject bitmapObject) {
     this.width = bitmapObject.getWidth();
     this.height = bitmapObject.getHeight();
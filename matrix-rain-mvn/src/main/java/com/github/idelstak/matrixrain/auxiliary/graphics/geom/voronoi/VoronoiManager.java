@@ -23,6 +23,7 @@
 package com.github.idelstak.matrixrain.auxiliary.graphics.geom.voronoi;
 
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.auxiliary.math.coord.Point2D;
 
 public final class VoronoiManager {
@@ -47,12 +48,13 @@ public final class VoronoiManager {
 
     Point2D[] centers = new Point2D[widthInCells * heightInCells];
     int centersCount = 0;
+    RandomSource random = RandomSource.current();
     for (int i = 0; i < widthInCells; i++) {
       for (int j = 0; j < heightInCells; j++) {
         int cellLeftPixel = i * averageDistanceBetweenCenters;
         int cellTopPixel = j * averageDistanceBetweenCenters;
-        int offsetX = (int) (Math.random() * averageDistanceBetweenCenters);
-        int offsetY = (int) (Math.random() * averageDistanceBetweenCenters);
+        int offsetX = (int) (random.nextDouble() * averageDistanceBetweenCenters);
+        int offsetY = (int) (random.nextDouble() * averageDistanceBetweenCenters);
         int pointX = cellLeftPixel + offsetX;
         int pointY = cellTopPixel + offsetY;
         if ((pointX < width) && (pointY < height)) {
@@ -176,12 +178,13 @@ public final class VoronoiManager {
 
     Point2D[] centers = new Point2D[widthInCells * heightInCells];
     int centersCount = 0;
+    RandomSource random = RandomSource.current();
     for (int i = 0; i < widthInCells; i++) {
       for (int j = 0; j < heightInCells; j++) {
         int cellLeftPixel = i * averageDistanceBetweenCenters;
         int cellTopPixel = j * averageDistanceBetweenCenters;
-        int offsetX = (int) (Math.random() * averageDistanceBetweenCenters);
-        int offsetY = (int) (Math.random() * averageDistanceBetweenCenters);
+        int offsetX = (int) (random.nextDouble() * averageDistanceBetweenCenters);
+        int offsetY = (int) (random.nextDouble() * averageDistanceBetweenCenters);
         int pointX = cellLeftPixel + offsetX;
         int pointY = cellTopPixel + offsetY;
         if ((pointX < width) && (pointY < height)) {
@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.auxiliary.math;
+
+/**
+ * 16.16 fixed-point helpers for the per-pixel colour math: coefficients in 0.0..1.0 become ints in
+ * 0..{@link #ONE}, and the normalising divide of the weighted averages goes through a table of
+ * reciprocals instead of a division.
+ */
+public final class FixedPoint {
+  public static final int SHIFT = 16;
+
+  public static final int ONE = 1 << SHIFT;
+
+  /** Largest denominator accepted by {@link #divide(int, int)}. */
+  public static final int MAX_DIVISOR = 4095;
+
+  // ceil(2^32 / d); exact for n <= 255 * d as long as n * d < 2^32
+  private static final long[] RECIPROCALS = new long[MAX_DIVISOR + 1];
+
+  static {
+    for (int d = 1; d <= MAX_DIVISOR; d++) RECIPROCALS[d] = ((1L << 32) + d - 1) / d;
+  }
+
+  private FixedPoint() {}
+
+  public static int fromDouble(double value) {
+    return (int) Math.round(value * ONE);
+  }
+
+  /**
+   * @return <code>start + floor(coef * (end - start))</code> for coef in 16.16; the shift rounds
+   *     toward negative infinity, which matches <code>(int) (start + coef * (end - start))</code>
+   *     only while that sum is not negative, as it never is for colour channels
+   */
+  public static int lerp(int start, int end, int coef) {
+    return start + ((coef * (end - start)) >> SHIFT);
+  }
+
+  /** @return <code>n / d</code> for 0 &lt;= n &lt;= 255 * d and 0 &lt; d &lt;= MAX_DIVISOR */
+  public static int divide(int n, int d) {
+    return (int) ((n * RECIPROCALS[d]) >>> 32);
+  }
+}
@@ -68,8 +68,12 @@ public final class GaussValues {
 
   // get [0..maxValue) random number with gaussian distribution
   public static int getRandomGaussian(int maxValue) {
+    return getRandomGaussian(maxValue, RandomSource.current());
+  }
+
+  public static int getRandomGaussian(int maxValue, RandomSource random) {
     // get random number from 0..0.5
-    double rand = Math.random() / 2.0;
+    double rand = random.nextDouble() / 2.0;
     // get corresponing gaussian random number from 0..150
     int index = 0;
     for (int i = 0; i < GAUSS_VALUES.length; i++) {
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.auxiliary.math;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random numbers for the simulation, in place of the shared generator behind Math.random.
+ *
+ * <p>Each thread draws from its own stream ({@link #current()}), split off a root generator, so
+ * threads never contend. Components that keep a stream of their own take one through {@link
+ * #split()}. The root is seeded from <code>matrixrain.seed</code> when that is set, or through
+ * {@link #setSeed(long)}; with a fixed seed a run on the same threads in the same order draws the
+ * same numbers, which is what benchmarks and golden-image comparisons need.
+ */
+public final class RandomSource {
+  private static SplittableRandom root = createRoot();
+
+  private static volatile boolean seeded = Long.getLong("matrixrain.seed") != null;
+
+  // bumped by setSeed; thread streams from an older seed are replaced on their next use
+  private static volatile int generation;
+
+  private static final ThreadLocal<RandomSource> current = new ThreadLocal<>();
+
+  private final SplittableRandom random;
+
+  private final int rootGeneration;
+
+  public RandomSource(long seed) {
+    this(new SplittableRandom(seed), -1);
+  }
+
+  private RandomSource(SplittableRandom random, int rootGeneration) {
+    this.random = random;
+    this.rootGeneration = rootGeneration;
+  }
+
+  private static SplittableRandom createRoot() {
+    Long seed = Long.getLong("matrixrain.seed");
+    return (seed != null) ? new SplittableRandom(seed) : new SplittableRandom();
+  }
+
+  /** Fixed-seed mode: the streams handed out from now on all derive from this seed. */
+  public static synchronized void setSeed(long seed) {
+    root = new SplittableRandom(seed);
+    seeded = true;
+    generation++;
+  }
+
+  /** @return whether runs are to be reproducible, see {@link #setSeed(long)} */
+  public static boolean isSeeded() {
+    return seeded;
+  }
+
+  private static synchronized RandomSource splitRoot() {
+    return new RandomSource(root.split(), generation);
+  }
+
+  /** @return the stream of the calling thread; not to be shared with other threads */
+  public static RandomSource current() {
+    RandomSource result = current.get();
+    if ((result == null) || (result.rootGeneration != generation)) {
+      result = splitRoot();
+      current.set(result);
+    }
+    return result;
+  }
+
+  /**
+   * @return a new stream, independent of this one, for a component or a task that may run on
+   *     another thread
+   */
+  public RandomSource split() {
+    return new RandomSource(this.random.split(), this.rootGeneration);
+  }
+
+  /** @return uniform in [0.0, 1.0), as Math.random */
+  public double nextDouble() {
+    return this.random.nextDouble();
+  }
+
+  /** @return uniform in [0, maxValue), 0 when maxValue is not positive */
+  public int nextInt(int maxValue) {
+    if (maxValue <= 0) return 0;
+    return this.random.nextInt(maxValue);
+  }
+
+  public boolean nextBoolean() {
+    return this.random.nextBoolean();
+  }
+}
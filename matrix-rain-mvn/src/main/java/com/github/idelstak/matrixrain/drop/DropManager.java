@@ -22,62 +22,41 @@
  */
 package com.github.idelstak.matrixrain.drop;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import com.github.idelstak.matrixrain.auxiliary.graphics.IndexImageManager;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.font.GlyphFactory;
 import com.github.idelstak.matrixrain.font.MemoryGlyph;
 
 public class DropManager {
 
-  private class DropListElement {
-    public ScreenDrop drop;
+  // longest possible drop, see getRandomHeadLength and getRandomTailLength
+  private static final int MAX_DROP_LENGTH = 2 + 19;
 
-    public DropListElement next;
+  // height of the window strips painted in parallel by fillColorIndexMap
+  private static final int STRIP_HEIGHT = 64;
 
-    public DropListElement prev;
+  // below this many drops the rain is painted on the calling thread
+  private static final int PARALLEL_MIN_DROPS = 200;
 
-    public DropListElement(ScreenDrop drop) {
-      this.drop = drop;
-      this.next = null;
-      this.prev = null;
-    }
-  }
+  private final DropStore drops;
 
-  private class DropList {
-    public DropListElement head;
+  private boolean parallelRasterization;
 
-    public int length;
+  // drops binned by strip - stripDrops[stripStarts[s]..stripStarts[s+1]-1] are in strip s
+  private int[] stripStarts, stripCursors;
 
-    public DropList() {
-      head = null;
-      length = 0;
-    }
+  private int[] stripDrops;
 
-    public synchronized void addDrop(ScreenDrop drop) {
-      DropListElement newElement = new DropListElement(drop);
-      newElement.next = this.head;
-      if (this.head != null) this.head.prev = newElement;
-      this.head = newElement;
-      length++;
-    }
-
-    public synchronized void removeDrop(DropListElement element) {
-      if (element == this.head) {
-        this.head = element.next;
-        if (this.head != null) this.head.prev = null;
-      } else {
-        if (element.next != null) element.next.prev = element.prev;
-        if (element.prev != null) element.prev.next = element.next;
-      }
-      length--;
-    }
-  }
-
-  private DropList dropList;
+  // slots picked by adjustDropCount, reused between calls
+  private int[] youngestDrops;
 
   private GlyphFactory glyphFactory;
 
+  private RandomSource random;
+
   private int windowWidth, windowHeight;
-  private long startTime, endTime;
 
   private int dropDelta;
 
@@ -87,7 +66,11 @@ public class DropManager {
 
   public DropManager(GlyphFactory glyphFactory, int windowWidth, int windowHeight) {
     this.glyphFactory = glyphFactory;
-    this.dropList = new DropList();
+    this.random = RandomSource.current().split();
+    this.drops = new DropStore(MAX_DROP_LENGTH, 64);
+    this.parallelRasterization = (Runtime.getRuntime().availableProcessors() > 1);
+    this.stripDrops = new int[0];
+    this.youngestDrops = new int[0];
     this.windowWidth = windowWidth;
     this.windowHeight = windowHeight;
     this.dropDelta = 0;
@@ -107,8 +90,7 @@ public class DropManager {
   }
 
   private int getRandom(int maxValue) {
-    double val = Math.random();
-    return (int) (Math.floor(val * maxValue));
+    return this.random.nextInt(maxValue);
   }
 
   private int getRandomHeadLength() {
@@ -138,25 +120,93 @@ public class DropManager {
   }
 
   private void addRandomDrop(int maxY) {
-    ScreenDrop drop = new ScreenDrop(glyphFactory);
-    drop.setBlurFactor(this.getRandomBlur());
-    drop.setFontSize(this.getRandomFontSize());
-    drop.setHeadLength(this.getRandomHeadLength());
-    drop.setHeadRadiance(this.getRandomHeadRadiance());
-    drop.setHeadSpeed(this.getRandomHeadSpeed());
-    drop.setHeadX(this.getRandomHeadX());
-    drop.setHeadY(this.getRandomHeadY(maxY));
-    drop.setTailLength(this.getRandomTailLength());
-    drop.setHopsToDrip(drop.getHeadSpeed());
-    drop.setToChangeLetters(false);
+    DropStore drops = this.drops;
+    int d = drops.add();
+    drops.blurFactor[d] = this.getRandomBlur();
+    drops.fontSizeIndex[d] = this.getRandomFontSize();
+    drops.headLength[d] = this.getRandomHeadLength();
+    drops.headRadiance[d] = this.getRandomHeadRadiance();
+    drops.headSpeed[d] = this.getRandomHeadSpeed();
+    drops.headX[d] = this.getRandomHeadX();
+    drops.headY[d] = this.getRandomHeadY(maxY);
+    drops.tailLength[d] = this.getRandomTailLength();
+    drops.hopsToDrip[d] = drops.headSpeed[d];
+    drops.drying[d] = false;
 
     if (this.getRandom(5) == 0) {
-      drop.setToDry(true);
-      drop.setHopsToDry((5 + this.getRandom(5)) * drop.getHeadSpeed());
-    } else drop.setToDry(false);
+      drops.toDry[d] = true;
+      drops.hopsToDry[d] = (5 + this.getRandom(5)) * drops.headSpeed[d];
+    } else drops.toDry[d] = false;
+
+    // choose glyphs
+    int length = drops.getLength(d);
+    int offset = d * drops.stride;
+    int glyphCount = this.glyphFactory.getGlyphCount();
+    for (int i = 0; i < length; i++) drops.glyphIndices[offset + i] = getRandom(glyphCount);
+    drops.originalLength[d] = length;
+  }
+
+  private int getFontSize(int d) {
+    return this.glyphFactory.getSizeByIndex(this.drops.fontSizeIndex[d]);
+  }
+
+  private void addGlyphAndShift(int d) {
+    DropStore drops = this.drops;
+    int offset = d * drops.stride;
+    // shift all existing glyphs one down
+    System.arraycopy(
+        drops.glyphIndices, offset, drops.glyphIndices, offset + 1, drops.getLength(d) - 1);
+    // randomly choose new glyph
+    drops.glyphIndices[offset] = getRandom(this.glyphFactory.getGlyphCount());
+  }
 
-    drop.populateGlyphs();
-    this.dropList.addDrop(drop);
+  private void dryIteration(int d, int speedupFactor) {
+    DropStore drops = this.drops;
+    int offset = d * drops.stride;
+    for (int count = 0; count < speedupFactor; count++) {
+      // make all glyphs smaller (by weight group)
+      int length = drops.getLength(d) - 1;
+      if (length <= 0) {
+        drops.tailLength[d] = 0;
+        drops.headLength[d] = 0;
+        return;
+      }
+      // in any case - no head
+      drops.headLength[d] = 0;
+      drops.tailLength[d] = length;
+      for (int i = 0; i < length; i++) {
+        int tenthIndex =
+            1 + (int) Math.floor(10.0 * ((double) i / (double) drops.originalLength[d]));
+        drops.glyphIndices[offset + i] =
+            this.glyphFactory.getGlyphIndexByWeightGroup(
+                tenthIndex, drops.fontSizeIndex[d], drops.blurFactor[d], 0, this.random);
+      }
+    }
+  }
+
+  private void iteration(int d, int hopsDelta, int speedupFactor) {
+    DropStore drops = this.drops;
+    drops.hopsToDrip[d] -= hopsDelta;
+
+    if (!drops.drying[d]) {
+      // drop is still very much alive
+      // check if need to move it down
+      if (drops.hopsToDrip[d] <= 0) {
+        drops.headY[d] += speedupFactor * this.getFontSize(d);
+        for (int i = 0; i < speedupFactor; i++) this.addGlyphAndShift(d);
+        drops.hopsToDrip[d] = drops.headSpeed[d];
+      }
+      // check if need to dry it
+      if (drops.toDry[d]) {
+        drops.hopsToDrip[d] -= hopsDelta;
+        if (drops.hopsToDry[d] <= 0) drops.drying[d] = true;
+      }
+    } else {
+      if (drops.hopsToDrip[d] <= 0) {
+        this.dryIteration(d, speedupFactor);
+        drops.hopsToDrip[d] = drops.headSpeed[d];
+      }
+    }
   }
 
   public synchronized void createDrops() {
@@ -172,76 +222,235 @@ public class DropManager {
     }
   }
 
+  // paints the rows of the glyph that lie in rows minY..maxY-1
   private void paintGlyph(
-      IndexImageManager indexImageManager, MemoryGlyph glyph, int x, int y, double fadeOut) {
-    int gSize = glyph.getSize();
-    for (int i = 0; i < gSize; i++) {
-      for (int j = 0; j < gSize; j++) {
-        int value = (int) (fadeOut * glyph.getPixel(i, j));
-        if (value > 0) indexImageManager.paintPixel(x + i, y + j, value);
+      IndexImageManager indexImageManager,
+      MemoryGlyph glyph,
+      int x,
+      int y,
+      double fadeOut,
+      int minY,
+      int maxY) {
+    int width = glyph.getWidth();
+    if ((width <= 0) || (glyph.getHeight() <= 0)) return;
+    int startRow = Math.max(glyph.getTop(), minY - y);
+    int endRow = Math.min(glyph.getBottom() + 1, maxY - y);
+    int left = x + glyph.getLeft();
+    byte[] atlas = glyph.getAtlas();
+    for (int j = startRow; j < endRow; j++) {
+      int rowOffset = glyph.getRowOffset(j);
+      if (fadeOut == 1.0) {
+        indexImageManager.paintSpan(left, y + j, atlas, rowOffset, width);
+        continue;
+      }
+      for (int i = 0; i < width; i++) {
+        int value = (int) (fadeOut * (atlas[rowOffset + i] & 0xFF));
+        if (value > 0) indexImageManager.paintPixel(left + i, y + j, value);
       }
     }
   }
 
-  public synchronized void fillColorIndexMap(IndexImageManager indexImageManager) {
-    DropListElement currElem = this.dropList.head;
-    while (currElem != null) {
-      ScreenDrop drop = currElem.drop;
-      MemoryGlyph[] glyphs = drop.getGlyphs();
+  // copies the pre-faded rows of the glyph that lie in rows minY..maxY-1
+  private void paintFadedGlyph(
+      IndexImageManager indexImageManager,
+      MemoryGlyph glyph,
+      int fadeOffset,
+      int x,
+      int y,
+      int minY,
+      int maxY) {
+    int width = glyph.getWidth();
+    int height = glyph.getHeight();
+    if ((width <= 0) || (height <= 0)) return;
+    int left = x + glyph.getLeft();
+    int top = y + glyph.getTop();
+    int startRow = Math.max(0, minY - top);
+    int endRow = Math.min(height, maxY - top);
+    byte[] fadeAtlas = this.glyphFactory.getFadeAtlas();
+    for (int row = startRow; row < endRow; row++)
+      indexImageManager.paintSpan(left, top + row, fadeAtlas, fadeOffset + row * width, width);
+  }
 
-      int headLength = drop.getHeadLength();
-      int totalLength = drop.getLength();
+  private void paintGlyph(
+      IndexImageManager indexImageManager,
+      int glyphIndex,
+      int fontSizeIndex,
+      int blurFactor,
+      int radiance,
+      int x,
+      int y,
+      double fadeOut,
+      int minY,
+      int maxY) {
+    MemoryGlyph glyph = this.glyphFactory.getGlyph(glyphIndex, fontSizeIndex, blurFactor, radiance);
+    if (this.glyphFactory.hasFadeLevels(fontSizeIndex, radiance)) {
+      int fadeOffset =
+          this.glyphFactory.getFadeOffset(
+              glyphIndex, fontSizeIndex, blurFactor, this.glyphFactory.getFadeLevel(fadeOut));
+      paintFadedGlyph(indexImageManager, glyph, fadeOffset, x, y, minY, maxY);
+    } else {
+      paintGlyph(indexImageManager, glyph, x, y, fadeOut, minY, maxY);
+    }
+  }
 
-      int x = drop.getHeadX();
-      for (int headIndex = 0; headIndex < headLength; headIndex++) {
-        // y coordinate of symbol (bottom-up)
-        int y = drop.getHeadY() - headIndex * drop.getFontSize();
-        double fadeOut = 1.0;
+  // paints the part of the drop that lies in rows minY..maxY-1
+  private void paintDrop(IndexImageManager indexImageManager, int d, int minY, int maxY) {
+    DropStore drops = this.drops;
+    int offset = d * drops.stride;
+    int fontSizeIndex = drops.fontSizeIndex[d];
+    int blurFactor = drops.blurFactor[d];
+    int fontSize = this.getFontSize(d);
+
+    int headLength = drops.headLength[d];
+    int totalLength = drops.getLength(d);
+    double fadeoutFactor = (double) totalLength / (double) drops.originalLength[d];
+
+    int x = drops.headX[d];
+    for (int headIndex = 0; headIndex < headLength; headIndex++) {
+      // y coordinate of symbol (bottom-up)
+      int y = drops.headY[d] - headIndex * fontSize;
+      if ((y >= maxY) || (y + fontSize <= minY)) continue;
+      double fadeOut = 1.0;
+
+      paintGlyph(
+          indexImageManager,
+          drops.glyphIndices[offset + headIndex],
+          fontSizeIndex,
+          blurFactor,
+          drops.headRadiance[d],
+          x,
+          y,
+          fadeOut,
+          minY,
+          maxY);
+    }
 
-        paintGlyph(indexImageManager, glyphs[headIndex], x, y, fadeOut);
-      }
+    for (int tailIndex = headLength; tailIndex < totalLength; tailIndex++) {
+      // y coordinate of symbol (bottom-up)
+      int y = drops.headY[d] - tailIndex * fontSize;
+      if ((y >= maxY) || (y + fontSize <= minY)) continue;
+      // fade-out for tail
+      // first tail letter - 0.85
+      // last tail letter - 0.4
+      double fade1 = 0.85 * fadeoutFactor;
+      double fade2 = 0.4 * fadeoutFactor;
+      double fadeOut =
+          fade1
+              - (fade1 - fade2)
+                  * (double) (tailIndex - headLength)
+                  / (double) (totalLength - 1 - headLength);
+
+      paintGlyph(
+          indexImageManager,
+          drops.glyphIndices[offset + tailIndex],
+          fontSizeIndex,
+          blurFactor,
+          0,
+          x,
+          y,
+          fadeOut,
+          minY,
+          maxY);
+    }
+  }
 
-      for (int tailIndex = headLength; tailIndex < totalLength; tailIndex++) {
-        // y coordinate of symbol (bottom-up)
-        int y = drop.getHeadY() - tailIndex * drop.getFontSize();
-        // fade-out for tail
-        // first tail letter - 0.85
-        // last tail letter - 0.4
-        double fade1 = 0.85 * drop.getFadeoutFactor();
-        double fade2 = 0.4 * drop.getFadeoutFactor();
-        double fadeOut =
-            fade1
-                - (fade1 - fade2)
-                    * (double) (tailIndex - headLength)
-                    / (double) (totalLength - 1 - headLength);
-
-        paintGlyph(indexImageManager, glyphs[tailIndex], x, y, fadeOut);
-      }
+  // first row covered by the drop (its topmost glyph)
+  private int getTopRow(int d) {
+    return this.drops.headY[d] - (this.drops.getLength(d) - 1) * this.getFontSize(d);
+  }
+
+  // row after the last one covered by the drop (the bottom of its head)
+  private int getBottomRow(int d) {
+    return this.drops.headY[d] + this.getFontSize(d);
+  }
 
-      currElem = currElem.next;
+  // sorts the drops into the strips they cover (a drop can be in several strips)
+  private void binDrops(int stripCount, int height) {
+    DropStore drops = this.drops;
+    if ((this.stripStarts == null) || (this.stripStarts.length != stripCount + 1)) {
+      this.stripStarts = new int[stripCount + 1];
+      this.stripCursors = new int[stripCount];
+    }
+    int[] stripStarts = this.stripStarts;
+    Arrays.fill(stripStarts, 0);
+    for (int d = 0; d < drops.count; d++) {
+      int top = Math.max(0, this.getTopRow(d));
+      int bottom = Math.min(height, this.getBottomRow(d));
+      if ((drops.getLength(d) == 0) || (top >= bottom)) continue;
+      for (int strip = top / STRIP_HEIGHT; strip <= (bottom - 1) / STRIP_HEIGHT; strip++)
+        stripStarts[strip + 1]++;
+    }
+    for (int strip = 0; strip < stripCount; strip++) stripStarts[strip + 1] += stripStarts[strip];
+
+    if (this.stripDrops.length < stripStarts[stripCount])
+      this.stripDrops = new int[2 * stripStarts[stripCount]];
+    int[] stripCursors = this.stripCursors;
+    System.arraycopy(stripStarts, 0, stripCursors, 0, stripCount);
+    for (int d = 0; d < drops.count; d++) {
+      int top = Math.max(0, this.getTopRow(d));
+      int bottom = Math.min(height, this.getBottomRow(d));
+      if ((drops.getLength(d) == 0) || (top >= bottom)) continue;
+      for (int strip = top / STRIP_HEIGHT; strip <= (bottom - 1) / STRIP_HEIGHT; strip++)
+        this.stripDrops[stripCursors[strip]++] = d;
     }
   }
 
+  public synchronized void fillColorIndexMap(IndexImageManager indexImageManager) {
+    int height = indexImageManager.getWindowHeight();
+    if (!this.parallelRasterization
+        || (this.drops.count < PARALLEL_MIN_DROPS)
+        || (height <= STRIP_HEIGHT)) {
+      for (int d = 0; d < this.drops.count; d++) this.paintDrop(indexImageManager, d, 0, height);
+      return;
+    }
+
+    // max-blending is order-independent and the strips share no rows - no locking needed
+    int stripCount = (height + STRIP_HEIGHT - 1) / STRIP_HEIGHT;
+    this.binDrops(stripCount, height);
+    int[] stripStarts = this.stripStarts;
+    int[] stripDrops = this.stripDrops;
+    IntStream.range(0, stripCount)
+        .parallel()
+        .forEach(
+            strip -> {
+              int minY = strip * STRIP_HEIGHT;
+              int maxY = Math.min(height, minY + STRIP_HEIGHT);
+              for (int k = stripStarts[strip]; k < stripStarts[strip + 1]; k++)
+                this.paintDrop(indexImageManager, stripDrops[k], minY, maxY);
+            });
+  }
+
+  /** Replaces the stream the drops draw their lengths, speeds and glyphs from. */
+  public synchronized void setRandomSource(RandomSource random) {
+    this.random = random;
+  }
+
+  /** Whether large rains are rasterised on the common fork-join pool, one strip per task. */
+  public synchronized void setParallelRasterization(boolean parallelRasterization) {
+    this.parallelRasterization = parallelRasterization;
+  }
+
+  public synchronized boolean isParallelRasterization() {
+    return this.parallelRasterization;
+  }
+
   public synchronized void iteration(int hopDelta) {
-    startTime = System.currentTimeMillis();
-    DropListElement currElem = this.dropList.head;
+    DropStore drops = this.drops;
     int removedCount = 0;
-    while (currElem != null) {
-      ScreenDrop drop = currElem.drop;
-      drop.iteration(hopDelta, this.globalSpeedupFactor);
+    for (int d = 0; d < drops.count; ) {
+      this.iteration(d, hopDelta, this.globalSpeedupFactor);
 
       // check that is visible and not empty
-      boolean isNotVisible =
-          ((drop.getHeadY() - drop.getLength() * drop.getFontSize()) > this.windowHeight);
-      boolean isEmpty = (drop.getLength() == 0);
+      int length = drops.getLength(d);
+      boolean isNotVisible = ((drops.headY[d] - length * this.getFontSize(d)) > this.windowHeight);
+      boolean isEmpty = (length == 0);
 
       if (isNotVisible || isEmpty) {
-        DropListElement nextElem = currElem.next;
-        this.dropList.removeDrop(currElem);
-        currElem = nextElem;
+        // the last drop moves into this slot and is looked at next
+        drops.remove(d);
         removedCount++;
       } else {
-        currElem = currElem.next;
+        d++;
       }
     }
 
@@ -271,34 +480,25 @@ public class DropManager {
   }
 
   public int getDropCount() {
-    return this.dropList.length;
+    return this.drops.count;
   }
 
   public synchronized boolean hasRegeneratingDrops() {
     if (this.dropDelta > 0) return true;
 
-    if (this.dropDelta == 0) return (this.isGenerating && (this.dropList.length > 0));
-
-    return (this.isGenerating && ((this.dropList.length + this.dropDelta) > 0));
-  }
+    if (this.dropDelta == 0) return (this.isGenerating && (this.drops.count > 0));
 
-  public long getTimeDelta() {
-    return endTime - startTime;
+    return (this.isGenerating && ((this.drops.count + this.dropDelta) > 0));
   }
 
   public synchronized void adjustDropCount(int delta) {
     if (delta < 0) {
       int toRemove = Math.min(this.getDropCount(), -delta);
       this.dropDelta -= toRemove;
-      DropListElement currElem = this.dropList.head;
-      while ((currElem != null) && (toRemove > 0)) {
-        ScreenDrop drop = currElem.drop;
-        if (!drop.getDrying()) {
-          drop.setDrying(true);
-          toRemove--;
-        }
-        currElem = currElem.next;
-      }
+      // newest drops first
+      if (this.youngestDrops.length < toRemove) this.youngestDrops = new int[2 * toRemove];
+      int picked = this.drops.selectYoungest(toRemove, this.youngestDrops);
+      for (int i = 0; i < picked; i++) this.drops.drying[this.youngestDrops[i]] = true;
     } else {
       // add new at next iteration
       this.dropDelta += delta;
@@ -308,18 +508,13 @@ public class DropManager {
   public synchronized void removeAllDrops() {
     // System.out.println("removing all drops");
     this.isGenerating = false;
-    DropListElement currElem = this.dropList.head;
-    while (currElem != null) {
-      currElem.drop.setDrying(true);
-      currElem = currElem.next;
-    }
+    for (int d = 0; d < this.drops.count; d++) this.drops.drying[d] = true;
     this.dropDelta = 0;
   }
 
   public synchronized void eliminateAllDrops() {
     // System.out.println("removing all drops");
-    this.dropList.head = null;
-    this.dropList.length = 0;
+    this.drops.clear();
     this.dropDelta = 0;
     this.isGenerating = false;
   }
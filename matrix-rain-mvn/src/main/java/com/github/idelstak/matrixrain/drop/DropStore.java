@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.drop;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the drops of a {@link DropManager}: drop {@code d} is the
+ * {@code d}-th entry of every array, and its glyph indices are {@code glyphIndices[d * stride ...
+ * d * stride + length - 1]} (index 0 is the lowest glyph of the head).
+ *
+ * <p>Live drops are always packed into {@code 0..count - 1}. Removal moves the last drop into the
+ * freed slot, and slots past {@code count} are reused by the next {@link #add()}, so the arrays are
+ * only reallocated when the pool has to grow. Slot order is therefore not spawn order; {@code
+ * birth} keeps that. Not synchronized - guarded by the drop manager.
+ */
+final class DropStore {
+
+  final int stride;
+
+  int capacity;
+
+  int count;
+
+  /** Number of drops ever added, the birth of the next one. */
+  private long births;
+
+  long[] birth;
+
+  int[] headX;
+
+  int[] headY;
+
+  int[] hopsToDrip;
+
+  int[] hopsToDry;
+
+  int[] fontSizeIndex;
+
+  int[] blurFactor;
+
+  int[] headRadiance;
+
+  int[] headSpeed;
+
+  int[] headLength;
+
+  int[] tailLength;
+
+  int[] originalLength;
+
+  boolean[] toDry;
+
+  boolean[] drying;
+
+  int[] glyphIndices;
+
+  DropStore(int stride, int initialCapacity) {
+    this.stride = stride;
+    this.count = 0;
+    this.allocate(Math.max(1, initialCapacity));
+  }
+
+  private void allocate(int newCapacity) {
+    this.birth = resize(this.birth, newCapacity);
+    this.headX = resize(this.headX, newCapacity);
+    this.headY = resize(this.headY, newCapacity);
+    this.hopsToDrip = resize(this.hopsToDrip, newCapacity);
+    this.hopsToDry = resize(this.hopsToDry, newCapacity);
+    this.fontSizeIndex = resize(this.fontSizeIndex, newCapacity);
+    this.blurFactor = resize(this.blurFactor, newCapacity);
+    this.headRadiance = resize(this.headRadiance, newCapacity);
+    this.headSpeed = resize(this.headSpeed, newCapacity);
+    this.headLength = resize(this.headLength, newCapacity);
+    this.tailLength = resize(this.tailLength, newCapacity);
+    this.originalLength = resize(this.originalLength, newCapacity);
+    this.toDry = resize(this.toDry, newCapacity);
+    this.drying = resize(this.drying, newCapacity);
+    this.glyphIndices = resize(this.glyphIndices, newCapacity * this.stride);
+    this.capacity = newCapacity;
+  }
+
+  private static int[] resize(int[] array, int newLength) {
+    return (array == null) ? new int[newLength] : Arrays.copyOf(array, newLength);
+  }
+
+  private static long[] resize(long[] array, int newLength) {
+    return (array == null) ? new long[newLength] : Arrays.copyOf(array, newLength);
+  }
+
+  private static boolean[] resize(boolean[] array, int newLength) {
+    return (array == null) ? new boolean[newLength] : Arrays.copyOf(array, newLength);
+  }
+
+  /**
+   * Returns the slot of a new drop; apart from its birth, its fields hold whatever the slot held
+   * before.
+   */
+  int add() {
+    if (this.count == this.capacity) this.allocate(2 * this.capacity);
+    this.birth[this.count] = this.births++;
+    return this.count++;
+  }
+
+  /** Removes the given drop; the last drop takes its slot. */
+  void remove(int d) {
+    int last = --this.count;
+    if (d == last) return;
+    this.birth[d] = this.birth[last];
+    this.headX[d] = this.headX[last];
+    this.headY[d] = this.headY[last];
+    this.hopsToDrip[d] = this.hopsToDrip[last];
+    this.hopsToDry[d] = this.hopsToDry[last];
+    this.fontSizeIndex[d] = this.fontSizeIndex[last];
+    this.blurFactor[d] = this.blurFactor[last];
+    this.headRadiance[d] = this.headRadiance[last];
+    this.headSpeed[d] = this.headSpeed[last];
+    this.headLength[d] = this.headLength[last];
+    this.tailLength[d] = this.tailLength[last];
+    this.originalLength[d] = this.originalLength[last];
+    this.toDry[d] = this.toDry[last];
+    this.drying[d] = this.drying[last];
+    System.arraycopy(
+        this.glyphIndices, last * this.stride, this.glyphIndices, d * this.stride, this.stride);
+  }
+
+  /**
+   * Picks the youngest drops that are not drying yet, in no particular order.
+   *
+   * @param slots receives the picked slots, at least {@code max} long
+   * @return how many were picked, less than {@code max} if fewer drops are not drying
+   */
+  int selectYoungest(int max, int[] slots) {
+    if (max <= 0) return 0;
+    // min-heap on birth: slots[0] is the oldest of the drops picked so far
+    int size = 0;
+    for (int d = 0; d < this.count; d++) {
+      if (this.drying[d]) continue;
+      if (size < max) {
+        slots[size] = d;
+        this.siftUp(slots, size++);
+      } else if (this.birth[d] > this.birth[slots[0]]) {
+        slots[0] = d;
+        this.siftDown(slots, size);
+      }
+    }
+    return size;
+  }
+
+  private void siftUp(int[] heap, int i) {
+    int d = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (this.birth[heap[parent]] <= this.birth[d]) break;
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = d;
+  }
+
+  private void siftDown(int[] heap, int size) {
+    int d = heap[0];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size) break;
+      if ((child + 1 < size) && (this.birth[heap[child + 1]] < this.birth[heap[child]])) child++;
+      if (this.birth[d] <= this.birth[heap[child]]) break;
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = d;
+  }
+
+  void clear() {
+    this.count = 0;
+  }
+
+  int getLength(int d) {
+    return this.headLength[d] + this.tailLength[d];
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.font;
+
+/**
+ * Sums of glyph pixels over Manhattan diamonds |dx| + |dy| <= radius in constant time. The glyph is
+ * rotated by 45 degrees (u = x + y, v = x - y), which turns every diamond into an axis-aligned
+ * square, and the rotated pixels go into a summed-area table. A second table counts the pixels that
+ * exist, so that diamonds clipped by the glyph border are averaged over the right count.
+ */
+final class DiamondSums {
+
+  private final int size;
+
+  // side of the rotated grid, and of the tables minus one
+  private final int side;
+
+  private final int[] sums, counts;
+
+  DiamondSums(MemoryGlyph glyph) {
+    this.size = glyph.getSize();
+    this.side = 2 * this.size - 1;
+    int stride = this.side + 1;
+    this.sums = new int[stride * stride];
+    this.counts = new int[stride * stride];
+
+    for (int x = 0; x < this.size; x++) {
+      for (int y = 0; y < this.size; y++) {
+        int index = (x + y + 1) * stride + (x - y + this.size - 1 + 1);
+        this.sums[index] = glyph.getPixel(x, y);
+        this.counts[index] = 1;
+      }
+    }
+    // integrate - the cells between the rotated pixels stay 0
+    for (int u = 1; u <= this.side; u++) {
+      for (int v = 1; v <= this.side; v++) {
+        int index = u * stride + v;
+        this.sums[index] +=
+            this.sums[index - 1] + this.sums[index - stride] - this.sums[index - stride - 1];
+        this.counts[index] +=
+            this.counts[index - 1] + this.counts[index - stride] - this.counts[index - stride - 1];
+      }
+    }
+  }
+
+  private int getSquareTotal(int[] table, int x, int y, int radius) {
+    int u = x + y, v = x - y + this.size - 1;
+    int u1 = Math.max(0, u - radius), u2 = Math.min(this.side - 1, u + radius) + 1;
+    int v1 = Math.max(0, v - radius), v2 = Math.min(this.side - 1, v + radius) + 1;
+    int stride = this.side + 1;
+    return table[u2 * stride + v2]
+        - table[u1 * stride + v2]
+        - table[u2 * stride + v1]
+        + table[u1 * stride + v1];
+  }
+
+  /** Sum of the pixels within the radius (Manhattan distance) of the pixel (x, y). */
+  int getSum(int x, int y, int radius) {
+    return this.getSquareTotal(this.sums, x, y, radius);
+  }
+
+  /** Number of glyph pixels within the radius of the pixel (x, y). */
+  int getCount(int x, int y, int radius) {
+    return this.getSquareTotal(this.counts, x, y, radius);
+  }
+}
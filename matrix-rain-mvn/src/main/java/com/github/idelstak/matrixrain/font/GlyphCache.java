@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.font;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned on-disk cache of generated glyphs. An entry is written once, on the first run with a
+ * given glyph image and parameters, and is memory-mapped when read back. A missing, stale or
+ * unreadable entry only means that the glyphs are generated again.
+ *
+ * <p>The cache lives in {@code ~/.matrix-rain/glyph-cache} unless the {@code matrixrain.glyphcache}
+ * system property names another directory; setting it to {@code off} disables the cache.
+ */
+final class GlyphCache {
+
+  // bump whenever the glyph generation or the entry layout changes
+  static final int VERSION = 1;
+
+  // "MRGC"
+  private static final int MAGIC = 0x4D524743;
+
+  private static final GlyphCache INSTANCE = new GlyphCache(getDirectory());
+
+  /** Writes the body of a cache entry. */
+  interface EntryWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  // null when disabled
+  private final Path directory;
+
+  private GlyphCache(Path directory) {
+    this.directory = directory;
+  }
+
+  static GlyphCache getInstance() {
+    return INSTANCE;
+  }
+
+  private static Path getDirectory() {
+    String property = System.getProperty("matrixrain.glyphcache");
+    if (property == null)
+      return Paths.get(System.getProperty("user.home"), ".matrix-rain", "glyph-cache");
+    if (property.isEmpty() || property.equalsIgnoreCase("off")) return null;
+    return Paths.get(property);
+  }
+
+  /** Starts a cache key, see mix. */
+  static long startKey() {
+    // FNV-1a offset basis
+    return mix(0xcbf29ce484222325L, VERSION);
+  }
+
+  /** Adds the value to the key. */
+  static long mix(long key, int value) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      key ^= (value >>> shift) & 0xFF;
+      key *= 0x100000001b3L;
+    }
+    return key;
+  }
+
+  static long mix(long key, int[] values) {
+    key = mix(key, values.length);
+    for (int value : values) key = mix(key, value);
+    return key;
+  }
+
+  private Path getPath(String kind, long key) {
+    return this.directory.resolve(String.format("%s-%016x.bin", kind, key));
+  }
+
+  /**
+   * Maps the entry and returns its body, or null if there is no valid entry for the kind and key.
+   */
+  ByteBuffer read(String kind, long key) {
+    if (this.directory == null) return null;
+    Path path = this.getPath(kind, key);
+    if (!Files.isRegularFile(path)) return null;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if ((buffer.remaining() < 16)
+          || (buffer.getInt() != MAGIC)
+          || (buffer.getInt() != VERSION)
+          || (buffer.getLong() != key)) {
+        System.err.println("Ignoring stale glyph cache entry " + path);
+        return null;
+      }
+      return buffer;
+    } catch (IOException ioe) {
+      System.err.println("Cannot read glyph cache entry " + path + ": " + ioe);
+      return null;
+    }
+  }
+
+  /** Writes the entry, replacing an existing one atomically. Failures are only reported. */
+  void write(String kind, long key, EntryWriter writer) {
+    if (this.directory == null) return;
+    Path path = this.getPath(kind, key);
+    Path tempPath = null;
+    try {
+      Files.createDirectories(this.directory);
+      tempPath = Files.createTempFile(this.directory, kind, ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(key);
+        writer.write(out);
+      }
+      Files.move(
+          tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException ioe) {
+      System.err.println("Cannot write glyph cache entry " + path + ": " + ioe);
+      try {
+        if (tempPath != null) Files.deleteIfExists(tempPath);
+      } catch (IOException ignored) {
+        // nothing more to do
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.font;
+
+import java.awt.Image;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/** Builds the glyph factories used by the intro from the bundled glyph images. */
+public final class GlyphFactories {
+
+  private GlyphFactories() {}
+
+  private static Image readGlyphImage(String name) {
+    try {
+      return ImageIO.read(GlyphFactories.class.getResource("/images/common/" + name));
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Cannot read glyph image " + name, ioe);
+    }
+  }
+
+  /** Katakana glyphs for the rain drops. */
+  public static GlyphFactory createRainGlyphFactory() {
+    long startTime = System.currentTimeMillis();
+    GlyphFactory glyphFactory = new GlyphFactory(readGlyphImage("katakana_b.gif"), 30, null);
+    // create mirrored glyphs with 3 blurs and 2 radiances
+    glyphFactory.createGlyphs(new int[] {6, 8, 10, 12, 14, 16}, 3, 2, true);
+    // create glyphs of small sizes
+    glyphFactory.createMiniGlyphs(new int[] {1, 2, 3, 4, 5, 6, 7, 8});
+    // pre-fade the glyphs for the drop tails
+    glyphFactory.createFadeLevels();
+    glyphFactory.packAtlas();
+    long endTime = System.currentTimeMillis();
+    System.out.println("Katakana glyphs: " + (endTime - startTime));
+    return glyphFactory;
+  }
+
+  /** English glyphs for the title. */
+  public static GlyphFactory createTitleGlyphFactory() {
+    long startTime = System.currentTimeMillis();
+    GlyphFactory glyphFactory = new GlyphFactory(readGlyphImage("abc.gif"), 40, null);
+    // create unmirrored glyphs with 2 blurs and 1 radiances
+    glyphFactory.createGlyphs(new int[] {}, 2, 1, false);
+    // compute segments
+    glyphFactory.computeGlyphSegments();
+    glyphFactory.packAtlas();
+    long endTime = System.currentTimeMillis();
+    System.out.println("English glyphs: " + (endTime - startTime));
+    return glyphFactory;
+  }
+}
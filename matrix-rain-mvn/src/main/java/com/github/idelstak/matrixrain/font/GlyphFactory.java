@@ -25,8 +25,20 @@ package com.github.idelstak.matrixrain.font;
 import java.awt.FontMetrics;
 import java.awt.Image;
 import java.awt.image.PixelGrabber;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 
 public class GlyphFactory {
+  /** Number of quantised fade-out levels kept for every glyph variant. */
+  public static final int FADE_LEVELS = 32;
+
   private MemoryGlyph[][][][] glyphs;
 
   private MemoryGlyph[][] miniGlyphs;
@@ -57,9 +69,21 @@ public class GlyphFactory {
 
   private RadianceFactory radianceFactory;
 
+  // pre-faded glyphs - for every variant FADE_LEVELS bounding-box crops, each row-major
+  private byte[] fadeAtlas;
+
+  private int[] fadeOffsets;
+
+  // whether the generation stages run on the common fork-join pool
+  private boolean parallelGeneration;
+
+  // cache key of the glyphs made by createGlyphs
+  private long glyphCacheKey;
+
   public GlyphFactory(Image glyphMapImage, int glyphSize, FontMetrics fontMetrics) {
 
     this.glyphSize = glyphSize;
+    this.parallelGeneration = (Runtime.getRuntime().availableProcessors() > 1);
 
     this.fontMetrics = fontMetrics;
     if (this.fontMetrics != null) {
@@ -90,6 +114,18 @@ public class GlyphFactory {
     glyphCount = (glyphMapWidth / glyphSize) * (glyphMapHeight / glyphSize);
   }
 
+  /**
+   * Whether createGlyphs, createMiniGlyphs, createFadeLevels and computeGlyphSegments spread their
+   * work over the common fork-join pool, one task per glyph. The result is the same either way.
+   */
+  public void setParallelGeneration(boolean parallelGeneration) {
+    this.parallelGeneration = parallelGeneration;
+  }
+
+  public boolean isParallelGeneration() {
+    return this.parallelGeneration;
+  }
+
   public int getGlyphCount() {
     return glyphCount;
   }
@@ -213,105 +249,119 @@ public class GlyphFactory {
     return newGlyph;
   }
 
-  private void createScaledGlyphs() {
-    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
-      for (int sizeIndex = 1; sizeIndex <= this.maxSize; sizeIndex++)
-        this.glyphs[glyphIndex][sizeIndex][0][0] =
-            this.createScaledVersion(glyphIndex, this.sizeArray[sizeIndex - 1]);
+  // runs the action for 0..count-1 and returns the time it took; the indices are spread over the
+  // common fork-join pool in parallel mode, and in both modes all of them are done on return
+  private long forEachIndex(int count, IntConsumer action) {
+    long time0 = System.currentTimeMillis();
+    IntStream indices = IntStream.range(0, count);
+    if (this.parallelGeneration) indices = indices.parallel();
+    indices.forEach(action);
+    return System.currentTimeMillis() - time0;
   }
 
-  private void createMiniGlyphs() {
-    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
-      for (int miniSizeIndex = 0; miniSizeIndex < this.maxMiniSize; miniSizeIndex++)
-        this.miniGlyphs[glyphIndex][miniSizeIndex] =
-            this.createScaledVersion(glyphIndex, this.miniSizeArray[miniSizeIndex]);
+  private long createScaledGlyphs() {
+    return this.forEachIndex(
+        this.glyphCount,
+        glyphIndex -> {
+          for (int sizeIndex = 1; sizeIndex <= this.maxSize; sizeIndex++)
+            this.glyphs[glyphIndex][sizeIndex][0][0] =
+                this.createScaledVersion(glyphIndex, this.sizeArray[sizeIndex - 1]);
+        });
   }
 
-  private void createBlurredGlyph(int glyphIndex, int sizeIndex, int blur) {
+  private long createMiniGlyphs() {
+    return this.forEachIndex(
+        this.glyphCount,
+        glyphIndex -> {
+          for (int miniSizeIndex = 0; miniSizeIndex < this.maxMiniSize; miniSizeIndex++)
+            this.miniGlyphs[glyphIndex][miniSizeIndex] =
+                this.createScaledVersion(glyphIndex, this.miniSizeArray[miniSizeIndex]);
+        });
+  }
+
+  private void createBlurredGlyph(
+      int glyphIndex, int sizeIndex, int blur, DiamondSums diamondSums) {
     int size = this.getSizeByIndex(sizeIndex);
 
-    // take average over a square of pixels
+    // take average over a diamond of pixels (Manhattan distance up to blur)
     glyphs[glyphIndex][sizeIndex][blur][0] = new MemoryGlyph(size);
 
     for (int col = 0; col < size; col++) {
       for (int row = 0; row < size; row++) {
-        int origLeft = Math.max(col - blur, 0);
-        int origRight = Math.min(col + blur, size - 1);
-        int origTop = Math.max(row - blur, 0);
-        int origBottom = Math.min(row + blur, size - 1);
-
-        double finalValue = 0.0;
-        int pixelCount = 0;
-        for (int origCol = origLeft; origCol <= origRight; origCol++) {
-          for (int origRow = origTop; origRow <= origBottom; origRow++) {
-            int manhattanDistance = Math.abs(origCol - col) + Math.abs(origRow - row);
-            if (manhattanDistance <= blur) {
-              finalValue += glyphs[glyphIndex][sizeIndex][0][0].getPixel(origCol, origRow);
-              pixelCount++;
-            }
-          }
-        }
-
-        finalValue /= pixelCount;
-        glyphs[glyphIndex][sizeIndex][blur][0].setPixel(col, row, (int) finalValue);
+        int finalValue =
+            diamondSums.getSum(col, row, blur) / diamondSums.getCount(col, row, blur);
+        glyphs[glyphIndex][sizeIndex][blur][0].setPixel(col, row, finalValue);
       }
     }
     glyphs[glyphIndex][sizeIndex][blur][0].sharpen(1.0);
     glyphs[glyphIndex][sizeIndex][blur][0].computeMetrics();
   }
 
-  private void createBlurredGlyphs() {
-    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
-      for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++)
-        for (int blur = 1; blur <= this.maxBlur; blur++)
-          this.createBlurredGlyph(glyphIndex, sizeIndex, blur);
+  private long createBlurredGlyphs() {
+    return this.forEachIndex(
+        this.glyphCount,
+        glyphIndex -> {
+          for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++) {
+            DiamondSums diamondSums = new DiamondSums(this.glyphs[glyphIndex][sizeIndex][0][0]);
+            for (int blur = 1; blur <= this.maxBlur; blur++)
+              this.createBlurredGlyph(glyphIndex, sizeIndex, blur, diamondSums);
+          }
+        });
   }
 
   private void createRadiantGlyph(int glyphIndex, int sizeIndex, int blur, int radiance) {
     int size = this.getSizeByIndex(sizeIndex);
+    MemoryGlyph oldGlyph = glyphs[glyphIndex][sizeIndex][blur][0];
 
     // replicate each pixel over a fade-out square
-    MemoryGlyph newGlyph = new MemoryGlyph(size);
+    int[] newPixels = new int[size * size];
     for (int col = 0; col < size; col++) {
       for (int row = 0; row < size; row++) {
         // each pixel in original glyph contributes to a square of
         // pixel in radiant glyph
-
-        int origLeft = col - radiance;
-        if (origLeft < 0) origLeft = 0;
-        int origRight = col + radiance;
-        if (origRight >= size) origRight = size - 1;
-        int origTop = row - radiance;
-        if (origTop < 0) origTop = 0;
-        int origBottom = row + radiance;
-        if (origBottom >= size) origBottom = size - 1;
-
-        int oldValue = glyphs[glyphIndex][sizeIndex][blur][0].getPixel(col, row);
+        int oldValue = oldGlyph.getPixel(col, row);
         if (oldValue == 0) continue;
-        newGlyph.addToPixel(col, row, oldValue);
-        for (int newCol = origLeft; newCol <= origRight; newCol++) {
-          for (int newRow = origTop; newRow <= origBottom; newRow++) {
-            newGlyph.addToPixel(
-                newCol,
-                newRow,
-                this.radianceFactory.getFactor(oldValue, radiance, newCol - col, newRow - row));
-          }
+        newPixels[col * size + row] += oldValue;
+        // only the nonzero factors, the zero ones do not change anything
+        int[] taps = this.radianceFactory.getTaps(oldValue, radiance);
+        for (int tap = 0; tap < taps.length; tap += 3) {
+          int newCol = col + taps[tap], newRow = row + taps[tap + 1];
+          if ((newCol < 0) || (newCol >= size) || (newRow < 0) || (newRow >= size)) continue;
+          newPixels[newCol * size + newRow] += taps[tap + 2];
         }
       }
     }
 
+    MemoryGlyph newGlyph = new MemoryGlyph(size);
+    for (int col = 0; col < size; col++)
+      for (int row = 0; row < size; row++) newGlyph.setPixel(col, row, newPixels[col * size + row]);
     newGlyph.normalize();
     newGlyph.computeMetrics();
     glyphs[glyphIndex][sizeIndex][blur][radiance] = newGlyph;
   }
 
-  private void createRadiantGlyphs() {
-    this.radianceFactory = new RadianceFactory();
-    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
-      for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++)
-        for (int blur = 0; blur <= this.maxBlur; blur++)
-          for (int radiance = 1; radiance <= this.maxRadiance; radiance++)
-            this.createRadiantGlyph(glyphIndex, sizeIndex, blur, radiance);
+  private long createRadiantGlyphs() {
+    this.radianceFactory = new RadianceFactory(Math.max(1, this.maxRadiance));
+    return this.forEachIndex(
+        this.glyphCount,
+        glyphIndex -> {
+          for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++)
+            for (int blur = 0; blur <= this.maxBlur; blur++)
+              for (int radiance = 1; radiance <= this.maxRadiance; radiance++)
+                this.createRadiantGlyph(glyphIndex, sizeIndex, blur, radiance);
+        });
+  }
+
+  private long computeWeightIndices() {
+    int blurCount = this.maxBlur + 1, radianceCount = this.maxRadiance + 1;
+    // one task per size/blur/radiance combination
+    return this.forEachIndex(
+        (this.maxSize + 1) * blurCount * radianceCount,
+        variant ->
+            this.computeWeightIndices(
+                variant / (blurCount * radianceCount),
+                (variant / radianceCount) % blurCount,
+                variant % radianceCount));
   }
 
   public void createGlyphs(int[] sizeArray, int maxBlur, int maxRadiance, boolean toMirrorGlyphs) {
@@ -324,23 +374,33 @@ public class GlyphFactory {
     this.glyphs = new MemoryGlyph[glyphCount][maxSize + 1][maxBlur + 1][maxRadiance + 1];
     this.weightIndices = new int[glyphCount][maxSize + 1][maxBlur + 1][maxRadiance + 1];
 
-    // read original glyphs
-    this.readOriginalGlyphs(toMirrorGlyphs);
-    this.createScaledGlyphs();
-    this.createBlurredGlyphs();
-    this.createRadiantGlyphs();
-
-    for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++)
-      for (int blurIndex = 0; blurIndex <= this.maxBlur; blurIndex++)
-        for (int radianceIndex = 0; radianceIndex <= this.maxRadiance; radianceIndex++)
-          this.computeWeightIndices(sizeIndex, blurIndex, radianceIndex);
-    // System.out.println("glyph read " + (time1-time0));
-    // System.out.println("glyph scale " + (time2-time1));
-    // System.out.println("glyph blur " + (time3-time2));
-    // System.out.println("glyph radiant " + (time4-time3));
-    // System.out.println("glyph weight " + (time5-time4));
+    GlyphCache glyphCache = GlyphCache.getInstance();
+    long cacheKey =
+        GlyphCache.mix(
+            GlyphCache.mix(this.getCacheKey(sizeArray), new int[] {maxBlur, maxRadiance}),
+            toMirrorGlyphs ? 1 : 0);
+    this.glyphCacheKey = cacheKey;
+    long time0 = System.currentTimeMillis();
+    String stageTimes;
+    if (this.readCachedGlyphs(glyphCache.read("glyphs", cacheKey))) {
+      stageTimes = "cache " + (System.currentTimeMillis() - time0);
+    } else {
+      // read original glyphs
+      this.readOriginalGlyphs(toMirrorGlyphs);
+      stageTimes = "read " + (System.currentTimeMillis() - time0);
+      stageTimes += ", scale " + this.createScaledGlyphs();
+      stageTimes += ", blur " + this.createBlurredGlyphs();
+      stageTimes += ", radiant " + this.createRadiantGlyphs();
+      glyphCache.write("glyphs", cacheKey, out -> writeGlyphs(out, this.getAllGlyphs()));
+    }
+    stageTimes += ", weight " + this.computeWeightIndices();
 
-    // System.out.println("Glyph total: " + (time5-time0));
+    System.out.println(
+        "Glyph stages"
+            + (this.parallelGeneration ? " (parallel): " : ": ")
+            + stageTimes
+            + ", total "
+            + (System.currentTimeMillis() - time0));
   }
 
   public void createMiniGlyphs(int[] miniSizeArray) {
@@ -350,10 +410,16 @@ public class GlyphFactory {
     // allocate miniglyph array and weight array
     this.miniGlyphs = new MemoryGlyph[glyphCount][this.maxMiniSize];
 
-    // scale mini glyphs
-    this.createMiniGlyphs();
-
-    // System.out.println("miniglyph " + (time1-time0));
+    GlyphCache glyphCache = GlyphCache.getInstance();
+    long cacheKey = this.getCacheKey(miniSizeArray);
+    long time0 = System.currentTimeMillis();
+    if (this.readCachedMiniGlyphs(glyphCache.read("miniglyphs", cacheKey))) {
+      System.out.println("Mini glyph stages: cache " + (System.currentTimeMillis() - time0));
+    } else {
+      // scale mini glyphs
+      System.out.println("Mini glyph stages: scale " + this.createMiniGlyphs());
+      glyphCache.write("miniglyphs", cacheKey, out -> writeGlyphs(out, this.getAllMiniGlyphs()));
+    }
   }
 
   /*
@@ -381,17 +447,19 @@ public class GlyphFactory {
     // unradiating
     // glyphs.
 
-    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++) {
-      for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++) {
-        for (int blurIndex = 0; blurIndex <= this.maxBlur; blurIndex++) {
-          for (int radianceIndex = 0; radianceIndex <= this.maxRadiance; radianceIndex++) {
-            this.glyphs[glyphIndex][sizeIndex][blurIndex][radianceIndex].computeSegments();
-            // this.glyphs[glyphIndex][sizeIndex][blurIndex][radianceIndex].generateRandomWarpedGlyph();
-          }
+    long time = this.forEachIndex(this.glyphCount, this::computeGlyphSegments);
+    System.out.println("Glyph segments: " + time);
+  }
+
+  private void computeGlyphSegments(int glyphIndex) {
+    for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++) {
+      for (int blurIndex = 0; blurIndex <= this.maxBlur; blurIndex++) {
+        for (int radianceIndex = 0; radianceIndex <= this.maxRadiance; radianceIndex++) {
+          this.glyphs[glyphIndex][sizeIndex][blurIndex][radianceIndex].computeSegments();
+          // this.glyphs[glyphIndex][sizeIndex][blurIndex][radianceIndex].generateRandomWarpedGlyph();
         }
       }
     }
-    // System.out.println("glyph warp " + (time1-time0));
   }
 
   public MemoryGlyph rewarpGlyph(int glyphIndex, int sizeIndex, int blurIndex, int radianceIndex) {
@@ -431,6 +499,244 @@ public class GlyphFactory {
     weights = null;
   }
 
+  /**
+   * Moves the pixels of all glyphs and mini glyphs into one contiguous byte atlas, see
+   * MemoryGlyph.getAtlas. Call once the glyphs are complete - changing a glyph afterwards gives it
+   * a private copy of its pixels again.
+   */
+  public void packAtlas() {
+    int atlasSize = 0;
+    List<MemoryGlyph> allGlyphs = this.getAllGlyphs();
+    allGlyphs.addAll(this.getAllMiniGlyphs());
+    for (MemoryGlyph glyph : allGlyphs) atlasSize += glyph.getBoxArea();
+    byte[] atlas = new byte[atlasSize];
+    int offset = 0;
+    for (MemoryGlyph glyph : allGlyphs) offset += glyph.pack(atlas, offset);
+  }
+
+  /** @return bytes held by the pixels of all glyphs, mini glyphs and fade levels */
+  public long getPixelBytes() {
+    long result = (this.fadeAtlas != null) ? this.fadeAtlas.length : 0;
+    if (this.glyphs != null)
+      for (MemoryGlyph glyph : this.getAllGlyphs()) result += glyph.getPixelBytes();
+    if (this.miniGlyphs != null)
+      for (MemoryGlyph glyph : this.getAllMiniGlyphs()) result += glyph.getPixelBytes();
+    return result;
+  }
+
+  private List<MemoryGlyph> getAllGlyphs() {
+    List<MemoryGlyph> result = new ArrayList<>();
+    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
+      for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++)
+        for (int blur = 0; blur <= this.maxBlur; blur++)
+          for (int radiance = 0; radiance <= this.maxRadiance; radiance++)
+            result.add(this.glyphs[glyphIndex][sizeIndex][blur][radiance]);
+    return result;
+  }
+
+  private List<MemoryGlyph> getAllMiniGlyphs() {
+    List<MemoryGlyph> result = new ArrayList<>();
+    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
+      for (int miniSizeIndex = 0; miniSizeIndex < this.maxMiniSize; miniSizeIndex++)
+        result.add(this.miniGlyphs[glyphIndex][miniSizeIndex]);
+    return result;
+  }
+
+  // identifies the glyph image, the glyph size and the sizes to generate
+  private long getCacheKey(int[] sizeArray) {
+    long key = GlyphCache.startKey();
+    key = GlyphCache.mix(key, new int[] {this.glyphMapWidth, this.glyphMapHeight, this.glyphSize});
+    key = GlyphCache.mix(key, this.glyphMapPixels);
+    return GlyphCache.mix(key, sizeArray);
+  }
+
+  // glyph count, then size, weight and bounding box of every glyph, then all the box pixels
+  private static void writeGlyphs(DataOutputStream out, List<MemoryGlyph> glyphs)
+      throws IOException {
+    out.writeInt(glyphs.size());
+    for (MemoryGlyph glyph : glyphs) {
+      out.writeInt(glyph.getSize());
+      out.writeInt(glyph.getWeight());
+      out.writeInt(glyph.getLeft());
+      out.writeInt(glyph.getRight());
+      out.writeInt(glyph.getTop());
+      out.writeInt(glyph.getBottom());
+    }
+    for (MemoryGlyph glyph : glyphs)
+      for (int y = glyph.getTop(); y <= glyph.getBottom(); y++)
+        for (int x = glyph.getLeft(); x <= glyph.getRight(); x++)
+          out.writeByte(Math.min(255, glyph.getPixel(x, y)));
+  }
+
+  // the glyphs written by writeGlyphs, sharing one atlas; null if the entry does not fit
+  private static MemoryGlyph[] readGlyphs(ByteBuffer buffer, int expectedCount) {
+    try {
+      int count = buffer.getInt();
+      if (count != expectedCount) return null;
+      MemoryGlyph[] result = new MemoryGlyph[count];
+      int[] metrics = new int[6 * count];
+      buffer.asIntBuffer().get(metrics);
+      buffer.position(buffer.position() + 4 * metrics.length);
+      int atlasSize = 0;
+      for (int i = 0; i < count; i++) {
+        int width = metrics[6 * i + 3] - metrics[6 * i + 2] + 1;
+        int height = metrics[6 * i + 5] - metrics[6 * i + 4] + 1;
+        if ((width > 0) && (height > 0)) atlasSize += width * height;
+      }
+      byte[] atlas = new byte[atlasSize];
+      buffer.get(atlas);
+      int offset = 0;
+      for (int i = 0; i < count; i++) {
+        int m = 6 * i;
+        result[i] =
+            new MemoryGlyph(
+                metrics[m],
+                metrics[m + 1],
+                metrics[m + 2],
+                metrics[m + 3],
+                metrics[m + 4],
+                metrics[m + 5],
+                atlas,
+                offset);
+        offset += result[i].getBoxArea();
+      }
+      return result;
+    } catch (BufferUnderflowException bue) {
+      System.err.println("Truncated glyph cache entry");
+      return null;
+    }
+  }
+
+  private boolean readCachedGlyphs(ByteBuffer buffer) {
+    if (buffer == null) return false;
+    MemoryGlyph[] cachedGlyphs =
+        readGlyphs(
+            buffer,
+            this.glyphCount * (this.maxSize + 1) * (this.maxBlur + 1) * (this.maxRadiance + 1));
+    if (cachedGlyphs == null) return false;
+    int i = 0;
+    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
+      for (int sizeIndex = 0; sizeIndex <= this.maxSize; sizeIndex++)
+        for (int blur = 0; blur <= this.maxBlur; blur++)
+          for (int radiance = 0; radiance <= this.maxRadiance; radiance++)
+            this.glyphs[glyphIndex][sizeIndex][blur][radiance] = cachedGlyphs[i++];
+    return true;
+  }
+
+  private boolean readCachedMiniGlyphs(ByteBuffer buffer) {
+    if (buffer == null) return false;
+    MemoryGlyph[] cachedGlyphs = readGlyphs(buffer, this.glyphCount * this.maxMiniSize);
+    if (cachedGlyphs == null) return false;
+    int i = 0;
+    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
+      for (int miniSizeIndex = 0; miniSizeIndex < this.maxMiniSize; miniSizeIndex++)
+        this.miniGlyphs[glyphIndex][miniSizeIndex] = cachedGlyphs[i++];
+    return true;
+  }
+
+  // fade levels are kept for the scaled, non-radiant glyphs only - those make the drop tails
+  private int getFadeVariantIndex(int index, int sizeIndex, int blur) {
+    return (index * this.maxSize + sizeIndex - 1) * (this.maxBlur + 1) + blur;
+  }
+
+  // bounding box area, 0 for glyphs without pixels
+  private static int getBoxArea(MemoryGlyph glyph) {
+    if ((glyph.getWidth() <= 0) || (glyph.getHeight() <= 0)) return 0;
+    return glyph.getWidth() * glyph.getHeight();
+  }
+
+  /**
+   * Precomputes FADE_LEVELS faded copies of every scaled non-radiant glyph, so that painting a
+   * faded glyph is a plain copy of its rows. Must be called after createGlyphs.
+   */
+  public void createFadeLevels() {
+    GlyphCache glyphCache = GlyphCache.getInstance();
+    long cacheKey = GlyphCache.mix(this.glyphCacheKey, FADE_LEVELS);
+    if (this.readCachedFadeLevels(glyphCache.read("fadelevels", cacheKey))) return;
+    this.computeFadeLevels();
+    glyphCache.write("fadelevels", cacheKey, this::writeFadeLevels);
+  }
+
+  private void computeFadeLevels() {
+    this.fadeOffsets = new int[this.glyphCount * this.maxSize * (this.maxBlur + 1)];
+    int atlasSize = 0;
+    for (int glyphIndex = 0; glyphIndex < this.glyphCount; glyphIndex++)
+      for (int sizeIndex = 1; sizeIndex <= this.maxSize; sizeIndex++)
+        for (int blur = 0; blur <= this.maxBlur; blur++) {
+          this.fadeOffsets[this.getFadeVariantIndex(glyphIndex, sizeIndex, blur)] = atlasSize;
+          atlasSize += FADE_LEVELS * getBoxArea(this.glyphs[glyphIndex][sizeIndex][blur][0]);
+        }
+
+    byte[] fadeAtlas = new byte[atlasSize];
+    this.forEachIndex(
+        this.glyphCount,
+        glyphIndex -> {
+          for (int sizeIndex = 1; sizeIndex <= this.maxSize; sizeIndex++)
+            for (int blur = 0; blur <= this.maxBlur; blur++) {
+              MemoryGlyph glyph = this.glyphs[glyphIndex][sizeIndex][blur][0];
+              int area = getBoxArea(glyph);
+              int offset = this.fadeOffsets[this.getFadeVariantIndex(glyphIndex, sizeIndex, blur)];
+              for (int level = 0; (level < FADE_LEVELS) && (area > 0); level++) {
+                double fadeOut = (double) level / (double) (FADE_LEVELS - 1);
+                int pos = offset + level * area;
+                for (int y = glyph.getTop(); y <= glyph.getBottom(); y++)
+                  for (int x = glyph.getLeft(); x <= glyph.getRight(); x++)
+                    fadeAtlas[pos++] = (byte) Math.min(255, (int) (fadeOut * glyph.getPixel(x, y)));
+              }
+            }
+        });
+    this.fadeAtlas = fadeAtlas;
+  }
+
+  private void writeFadeLevels(DataOutputStream out) throws IOException {
+    out.writeInt(this.fadeOffsets.length);
+    for (int fadeOffset : this.fadeOffsets) out.writeInt(fadeOffset);
+    out.writeInt(this.fadeAtlas.length);
+    out.write(this.fadeAtlas);
+  }
+
+  private boolean readCachedFadeLevels(ByteBuffer buffer) {
+    if (buffer == null) return false;
+    try {
+      int[] fadeOffsets = new int[buffer.getInt()];
+      if (fadeOffsets.length != this.glyphCount * this.maxSize * (this.maxBlur + 1)) return false;
+      buffer.asIntBuffer().get(fadeOffsets);
+      buffer.position(buffer.position() + 4 * fadeOffsets.length);
+      byte[] fadeAtlas = new byte[buffer.getInt()];
+      buffer.get(fadeAtlas);
+      this.fadeOffsets = fadeOffsets;
+      this.fadeAtlas = fadeAtlas;
+      return true;
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      System.err.println("Truncated glyph cache entry");
+      return false;
+    }
+  }
+
+  public boolean hasFadeLevels(int sizeIndex, int radiance) {
+    return (this.fadeAtlas != null) && (sizeIndex > 0) && (radiance == 0);
+  }
+
+  /** Nearest precomputed level for the fade-out factor (0.0 - 1.0). */
+  public int getFadeLevel(double fadeOut) {
+    int level = (int) (fadeOut * (FADE_LEVELS - 1) + 0.5);
+    return Math.max(0, Math.min(FADE_LEVELS - 1, level));
+  }
+
+  /** The pre-faded glyphs, values are unsigned. */
+  public byte[] getFadeAtlas() {
+    return this.fadeAtlas;
+  }
+
+  /**
+   * Start of the given fade level of the non-radiant glyph in the fade atlas. The rows of the
+   * glyph's bounding box (getLeft..getRight, getTop..getBottom) follow each other without gaps.
+   */
+  public int getFadeOffset(int index, int sizeIndex, int blur, int fadeLevel) {
+    return this.fadeOffsets[this.getFadeVariantIndex(index, sizeIndex, blur)]
+        + fadeLevel * getBoxArea(this.glyphs[index][sizeIndex][blur][0]);
+  }
+
   public MemoryGlyph getGlyph(int index, int sizeIndex, int blur, int radiance) {
     return this.glyphs[index][sizeIndex][blur][radiance];
   }
@@ -445,10 +751,16 @@ public class GlyphFactory {
   }
 
   public int getGlyphIndexByWeightGroup(int tenthIndex, int sizeIndex, int blur, int radiance) {
+    return this.getGlyphIndexByWeightGroup(
+        tenthIndex, sizeIndex, blur, radiance, RandomSource.current());
+  }
+
+  public int getGlyphIndexByWeightGroup(
+      int tenthIndex, int sizeIndex, int blur, int radiance, RandomSource random) {
     // draw a random index in this tenth and return the corresponding glyph
     // index
     int tenthSize = this.glyphCount / 10;
-    int weightIndex = 10 * (tenthIndex - 1) + (int) (Math.floor(Math.random() * tenthSize));
+    int weightIndex = 10 * (tenthIndex - 1) + random.nextInt(tenthSize);
     int glyphIndex = this.weightIndices[weightIndex][sizeIndex][blur][radiance];
     return glyphIndex;
   }
@@ -456,7 +768,7 @@ public class GlyphFactory {
   public MemoryGlyph getGlyphByWeightGroup(int tenthIndex, int sizeIndex, int blur, int radiance) {
     // draw a random index in this tenth and return the corresponding glyph
     int tenthSize = this.glyphCount / 10;
-    int weightIndex = 10 * (tenthIndex - 1) + (int) (Math.floor(Math.random() * tenthSize));
+    int weightIndex = 10 * (tenthIndex - 1) + RandomSource.current().nextInt(tenthSize);
     int glyphIndex = this.weightIndices[weightIndex][sizeIndex][blur][radiance];
     return glyphs[glyphIndex][sizeIndex][blur][radiance];
   }
@@ -23,6 +23,7 @@
 package com.github.idelstak.matrixrain.font;
 
 import com.github.idelstak.matrixrain.auxiliary.graphics.IndexBitmapObject;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.auxiliary.math.intersect.Circle1PixelArbitraryIntersectorFactory;
 import com.github.idelstak.matrixrain.intro.IntroManager;
 import com.github.idelstak.matrixrain.phosphore.PhosphoreCloud;
@@ -30,8 +31,14 @@ import com.github.idelstak.matrixrain.phosphore.PhosphoreCloudFactory;
 import com.github.idelstak.matrixrain.phosphore.Phosphorizer;
 
 public final class MemoryGlyph {
+  // pixels[x][y] until the glyph is packed, null afterwards
   private int[][] pixels;
 
+  // packed pixels - the bounding box row after row, getWidth() unsigned values per row
+  private byte[] atlas;
+
+  private int atlasOffset;
+
   private int size;
 
   private int weight;
@@ -66,12 +73,36 @@ public final class MemoryGlyph {
     this.glowCloud = null;
   }
 
+  // an already packed glyph, see pack
+  MemoryGlyph(
+      int size,
+      int weight,
+      int left,
+      int right,
+      int top,
+      int bottom,
+      byte[] atlas,
+      int atlasOffset) {
+    this.size = size;
+    this.weight = weight;
+    this.left = left;
+    this.right = right;
+    this.top = top;
+    this.bottom = bottom;
+    this.atlas = atlas;
+    this.atlasOffset = atlasOffset;
+    this.pixels = null;
+    this.segments = null;
+    this.glowCloud = null;
+  }
+
   public Object clone() {
     if (this.size == 0) return new MemoryGlyph();
 
     MemoryGlyph glyph = new MemoryGlyph(this.size);
+    int[][] pixels = this.getPixelArray();
     for (int i = 0; i < this.size; i++) {
-      System.arraycopy(this.pixels[i], 0, glyph.pixels[i], 0, this.size);
+      System.arraycopy(pixels[i], 0, glyph.pixels[i], 0, this.size);
     }
     glyph.computeMetrics();
     glyph.computeSegments();
@@ -80,16 +111,90 @@ public final class MemoryGlyph {
     return glyph;
   }
 
+  // the pixels as a 2D array - a fresh copy for a packed glyph
+  private int[][] getPixelArray() {
+    if (this.pixels != null) return this.pixels;
+    int[][] result = new int[this.size][this.size];
+    for (int y = this.top; y <= this.bottom; y++)
+      for (int x = this.left; x <= this.right; x++) result[x][y] = this.getPixel(x, y);
+    return result;
+  }
+
+  // back to the 2D array before the pixels change
+  private void unpack() {
+    if (this.pixels != null) return;
+    this.pixels = this.getPixelArray();
+    this.atlas = null;
+  }
+
+  // bounding box area, 0 for a glyph without pixels
+  int getBoxArea() {
+    if ((this.getWidth() <= 0) || (this.getHeight() <= 0)) return 0;
+    return this.getWidth() * this.getHeight();
+  }
+
+  /** @return bytes held by the pixels, the glyph's share of the atlas once packed */
+  public long getPixelBytes() {
+    if (this.pixels != null) return 4L * this.size * this.size;
+    return this.getBoxArea();
+  }
+
+  // copies the bounding box into the atlas at the offset, dropping the 2D array or the previous
+  // atlas; pixels outside the bounding box (see computeMetrics) are 0 and are not stored
+  int pack(byte[] atlas, int offset) {
+    int width = this.getWidth();
+    if (this.pixels == null) {
+      System.arraycopy(this.atlas, this.atlasOffset, atlas, offset, this.getBoxArea());
+    } else {
+      for (int y = this.top; y <= this.bottom; y++)
+        for (int x = this.left; x <= this.right; x++)
+          atlas[offset + (y - this.top) * width + (x - this.left)] =
+              (byte) Math.min(255, this.pixels[x][y]);
+    }
+    this.atlas = atlas;
+    this.atlasOffset = offset;
+    this.pixels = null;
+    return this.getBoxArea();
+  }
+
+  /** Moves the pixels into a byte array of their own, see getAtlas. */
+  public void pack() {
+    if (this.pixels == null) return;
+    this.pack(new byte[this.getBoxArea()], 0);
+  }
+
+  public boolean isPacked() {
+    return (this.pixels == null);
+  }
+
+  /**
+   * The packed pixels, possibly shared with other glyphs. Each row y from getTop() to getBottom()
+   * starts at getRowOffset(y) and holds getWidth() unsigned values, for getLeft()..getRight(). The
+   * glyph is packed first if needed.
+   */
+  public byte[] getAtlas() {
+    this.pack();
+    return this.atlas;
+  }
+
+  public int getRowOffset(int y) {
+    return this.atlasOffset + (y - this.top) * this.getWidth();
+  }
+
   public void setPixel(int x, int y, int value) {
+    this.unpack();
     pixels[x][y] = value;
   }
 
   public void addToPixel(int x, int y, int value) {
+    this.unpack();
     pixels[x][y] += value;
   }
 
   public int getPixel(int x, int y) {
-    return pixels[x][y];
+    if (this.pixels != null) return pixels[x][y];
+    if ((x < this.left) || (x > this.right) || (y < this.top) || (y > this.bottom)) return 0;
+    return this.atlas[this.getRowOffset(y) + x - this.left] & 0xFF;
   }
 
   public int getSize() {
@@ -101,6 +206,7 @@ public final class MemoryGlyph {
   }
 
   public void sharpen(double coef) {
+    this.unpack();
     // find maximum value and "stretch" the color map to 255
     int maxVal = 0;
     for (int i = 0; i < size; i++)
@@ -118,11 +224,13 @@ public final class MemoryGlyph {
   }
 
   public void cutoff() {
+    this.unpack();
     for (int i = 0; i < size; i++)
       for (int j = 0; j < size; j++) pixels[i][j] = Math.min(255, pixels[i][j]);
   }
 
   public void brighten(double factor, int maxValue) {
+    this.unpack();
     for (int i = 0; i < size; i++)
       for (int j = 0; j < size; j++)
         if (pixels[i][j] < maxValue)
@@ -131,11 +239,13 @@ public final class MemoryGlyph {
   }
 
   public void normalize() {
+    this.unpack();
     for (int i = 0; i < size; i++)
       for (int j = 0; j < size; j++) if (pixels[i][j] > 255) pixels[i][j] = 255;
   }
 
   public void scaleValues() {
+    this.unpack();
     int maxValue = 0;
     for (int i = 0; i < size; i++)
       for (int j = 0; j < size; j++) maxValue = Math.max(maxValue, pixels[i][j]);
@@ -147,6 +257,7 @@ public final class MemoryGlyph {
   }
 
   public void computeMetrics() {
+    int[][] pixels = this.getPixelArray();
     // compute sum of pixels
     int sum = 0;
     for (int i = 0; i < size; i++) for (int j = 0; j < size; j++) sum += pixels[i][j];
@@ -203,7 +314,7 @@ public final class MemoryGlyph {
   }
 
   public void computeSegments() {
-    SegmentScanner segmScanner = new SegmentScanner(this.pixels, this.size);
+    SegmentScanner segmScanner = new SegmentScanner(this.getPixelArray(), this.size);
     segmScanner.computeSegments();
     this.segments = segmScanner.getSegments();
     segmScanner = null;
@@ -215,6 +326,7 @@ public final class MemoryGlyph {
 
   // shift a part of glyph vertically
   private void shiftGlyphVertically(int shiftColumn, int yOffset, boolean toShiftRightPart) {
+    this.unpack();
     int startRowInSource = Math.max(0, yOffset);
     int endRowInSource = Math.min(this.size - 1, this.size - 1 + yOffset);
 
@@ -236,6 +348,7 @@ public final class MemoryGlyph {
 
   // shift a part of glyph horizontally
   private void shiftGlyphHorizontally(int shiftRow, int xOffset, boolean toShiftUpperPart) {
+    this.unpack();
     int startColumnInSource = Math.max(0, xOffset);
     int endColumnInSource = Math.min(this.size - 1, this.size - 1 + xOffset);
 
@@ -258,7 +371,7 @@ public final class MemoryGlyph {
 
   // shift a part of glyph by given segment
   private void shiftGlyphBySegment(GlyphSegment glyphSegment, int offset) {
-    boolean randomBool = (Math.random() < 0.5) ? true : false;
+    boolean randomBool = RandomSource.current().nextBoolean();
     if (glyphSegment.isVertical)
       this.shiftGlyphVertically(glyphSegment.middleX(), offset, randomBool);
     else this.shiftGlyphHorizontally(glyphSegment.middleY(), offset, randomBool);
@@ -266,6 +379,7 @@ public final class MemoryGlyph {
 
   // remove a part of glyph by given segment
   private void removeGlyphBySegment(GlyphSegment glyphSegment) {
+    this.unpack();
     if (glyphSegment.isVertical) {
       // decide whether to remove left part or right part
       int midX = glyphSegment.middleX();
@@ -306,18 +420,17 @@ public final class MemoryGlyph {
   }
 
   private int getRandom(int maxValue) {
-    double val = Math.random();
-    return (int) (Math.floor(val * maxValue));
+    return RandomSource.current().nextInt(maxValue);
   }
 
   private void shiftGlyphRandomly() {
-    if (Math.random() < 0.5) {
+    if (RandomSource.current().nextBoolean()) {
       // choose vertical line
       int column = this.size / 4 + this.getRandom(this.size / 2);
       // choose offset 1..2
       int shiftAmount = 1 + this.getRandom(2);
       // choose side
-      boolean toRight = (Math.random() < 0.5);
+      boolean toRight = RandomSource.current().nextBoolean();
       this.shiftGlyphVertically(column, shiftAmount, toRight);
     } else {
       // choose horizontal line
@@ -325,7 +438,7 @@ public final class MemoryGlyph {
       // choose offset 1..2
       int shiftAmount = 1 + this.getRandom(2);
       // choose side
-      boolean toUp = (Math.random() < 0.5);
+      boolean toUp = RandomSource.current().nextBoolean();
       this.shiftGlyphHorizontally(row, shiftAmount, toUp);
     }
   }
@@ -352,7 +465,7 @@ public final class MemoryGlyph {
       newGlyph.shiftGlyphRandomly();
     } else {
       int segmentCount = newGlyph.segments.count();
-      if (Math.random() < 0.5) {
+      if (RandomSource.current().nextBoolean()) {
         newGlyph.shiftGlyphRandomly();
       } else {
         // get index of random segment
@@ -380,12 +493,14 @@ public final class MemoryGlyph {
   }
 
   private int getHighestPixel(int x, int toleranceLevel) {
-    for (int y = this.top; y <= this.bottom; y++) if (pixels[x][y] >= toleranceLevel) return y;
+    for (int y = this.top; y <= this.bottom; y++)
+      if (this.getPixel(x, y) >= toleranceLevel) return y;
     return -1;
   }
 
   private int getLowestPixel(int x, int toleranceLevel) {
-    for (int y = this.bottom; y >= this.top; y--) if (pixels[x][y] >= toleranceLevel) return y;
+    for (int y = this.bottom; y >= this.top; y--)
+      if (this.getPixel(x, y) >= toleranceLevel) return y;
     return -1;
   }
 
@@ -393,7 +508,7 @@ public final class MemoryGlyph {
     int startX = this.right, endX = (this.left + this.right) / 2;
     for (int y = this.top; y <= this.bottom; y++) {
       for (int x = startX; x >= endX; x--) {
-        if (this.pixels[x][y] >= toleranceLevel) return this.getHighestPixel(x, toleranceLevel);
+        if (this.getPixel(x, y) >= toleranceLevel) return this.getHighestPixel(x, toleranceLevel);
       }
       endX = Math.max(endX - 1, this.left);
     }
@@ -406,7 +521,7 @@ public final class MemoryGlyph {
     int startX = this.left, endX = (this.left + this.right) / 2;
     for (int y = this.top; y <= this.bottom; y++) {
       for (int x = startX; x <= endX; x++) {
-        if (this.pixels[x][y] >= toleranceLevel) return this.getHighestPixel(x, toleranceLevel);
+        if (this.getPixel(x, y) >= toleranceLevel) return this.getHighestPixel(x, toleranceLevel);
       }
       endX = Math.min(endX + 1, this.right);
     }
@@ -419,7 +534,7 @@ public final class MemoryGlyph {
     int startX = this.right, endX = (this.left + this.right) / 2;
     for (int y = this.bottom; y >= this.top; y--) {
       for (int x = startX; x >= endX; x--) {
-        if (this.pixels[x][y] >= toleranceLevel) return this.getLowestPixel(x, toleranceLevel);
+        if (this.getPixel(x, y) >= toleranceLevel) return this.getLowestPixel(x, toleranceLevel);
       }
       endX = Math.max(endX - 1, this.left);
     }
@@ -432,7 +547,7 @@ public final class MemoryGlyph {
     int startX = this.left, endX = (this.left + this.right) / 2;
     for (int y = this.bottom; y >= this.top; y--) {
       for (int x = startX; x <= endX; x++) {
-        if (this.pixels[x][y] >= toleranceLevel) {
+        if (this.getPixel(x, y) >= toleranceLevel) {
           return this.getLowestPixel(x, toleranceLevel);
         }
       }
@@ -447,7 +562,7 @@ public final class MemoryGlyph {
     // find first pixel from right above the tolerance level
     int firstAbove = -1;
     for (int x = this.right; x >= this.left; x--) {
-      if (this.pixels[x][y] >= toleranceLevel) {
+      if (this.getPixel(x, y) >= toleranceLevel) {
         firstAbove = x;
         break;
       }
@@ -457,7 +572,7 @@ public final class MemoryGlyph {
 
     // go left until above the tolerance level
     for (int x = firstAbove - 1; x >= this.left; x--)
-      if (this.pixels[x][y] < toleranceLevel) return (x + 1);
+      if (this.getPixel(x, y) < toleranceLevel) return (x + 1);
 
     // if here - the leftmost pixel is ours
     return this.left;
@@ -467,7 +582,7 @@ public final class MemoryGlyph {
     // find first pixel from left above the tolerance level
     int firstAbove = -1;
     for (int x = this.left; x <= this.right; x++) {
-      if (this.pixels[x][y] >= toleranceLevel) {
+      if (this.getPixel(x, y) >= toleranceLevel) {
         firstAbove = x;
         break;
       }
@@ -477,7 +592,7 @@ public final class MemoryGlyph {
 
     // go right until above the tolerance level
     for (int x = firstAbove + 1; x <= this.right; x++)
-      if (this.pixels[x][y] < toleranceLevel) return (x - 1);
+      if (this.getPixel(x, y) < toleranceLevel) return (x - 1);
 
     // if here - the rightmost pixel is ours
     return this.right;
@@ -489,7 +604,7 @@ public final class MemoryGlyph {
 
     for (int col = 0; col < size; col++) {
       for (int row = 0; row < size; row++) {
-        if (this.pixels[col][row] == 0) continue;
+        if (this.getPixel(col, row) == 0) continue;
 
         // find all pixels in the new glyph that are affected by this
         // pixel
@@ -525,7 +640,7 @@ public final class MemoryGlyph {
               } else rowShare = 1.0;
             }
 
-            newGlyph.pixels[newCol][newRow] += columnShare * rowShare * this.pixels[col][row];
+            newGlyph.pixels[newCol][newRow] += columnShare * rowShare * this.getPixel(col, row);
           }
         }
       }
@@ -540,7 +655,7 @@ public final class MemoryGlyph {
     long time0 = System.currentTimeMillis();
 
     MemoryGlyph newGlyph = new MemoryGlyph();
-    IndexBitmapObject oldPixels = new IndexBitmapObject(this.pixels, this.size, this.size);
+    IndexBitmapObject oldPixels = new IndexBitmapObject(this.getPixelArray(), this.size, this.size);
     IndexBitmapObject newPixels = Phosphorizer.createScaledUpPixelVersion(oldPixels, iFct, factor);
     oldPixels = null;
 
@@ -561,7 +676,7 @@ public final class MemoryGlyph {
     long time0 = System.currentTimeMillis();
 
     MemoryGlyph newGlyph = new MemoryGlyph();
-    IndexBitmapObject oldPixels = new IndexBitmapObject(this.pixels, this.size, this.size);
+    IndexBitmapObject oldPixels = new IndexBitmapObject(this.getPixelArray(), this.size, this.size);
     IndexBitmapObject newPixels =
         Phosphorizer.createScaledUpPhosphoreVersion(oldPixels, pcFct, iFct, factor, true);
     oldPixels = null;
@@ -22,6 +22,8 @@
  */
 package com.github.idelstak.matrixrain.font;
 
+import java.util.Arrays;
+
 public class RadianceFactory {
 
   private RadianceMap[][] radiances;
@@ -78,13 +80,37 @@ public class RadianceFactory {
       if (dy < 0) dy = -dy;
       return rMap[dx][dy];
     }
+
+    // the nonzero factors over the whole square, as (dx, dy, factor) triples
+    public int[] getTaps() {
+      int[] taps = new int[3 * (2 * radiance + 1) * (2 * radiance + 1)];
+      int tapCount = 0;
+      for (int dx = -radiance; dx <= radiance; dx++) {
+        for (int dy = -radiance; dy <= radiance; dy++) {
+          int factor = this.getFactor(dx, dy);
+          if (factor == 0) continue;
+          taps[tapCount++] = dx;
+          taps[tapCount++] = dy;
+          taps[tapCount++] = factor;
+        }
+      }
+      return Arrays.copyOf(taps, tapCount);
+    }
   }
 
+  private int[][][] taps;
+
   public RadianceFactory() {
-    radiances = new RadianceMap[256][2];
+    this(2);
+  }
+
+  public RadianceFactory(int maxRadiance) {
+    radiances = new RadianceMap[256][maxRadiance];
+    taps = new int[256][maxRadiance][];
     for (int cValue = 0; cValue < 256; cValue++) {
-      for (int radiance = 1; radiance <= 2; radiance++) {
+      for (int radiance = 1; radiance <= maxRadiance; radiance++) {
         radiances[cValue][radiance - 1] = new RadianceMap(cValue, radiance);
+        taps[cValue][radiance - 1] = radiances[cValue][radiance - 1].getTaps();
       }
     }
   }
@@ -92,4 +118,12 @@ public class RadianceFactory {
   public int getFactor(int cValue, int radiance, int dx, int dy) {
     return radiances[cValue][radiance - 1].getFactor(dx, dy);
   }
+
+  /**
+   * The nonzero factors of the color value for -radiance <= dx, dy <= radiance, as consecutive
+   * (dx, dy, factor) triples.
+   */
+  public int[] getTaps(int cValue, int radiance) {
+    return taps[cValue][radiance - 1];
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.intro;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Flight recorder event for every iteration of the intro; its duration is the whole iteration. */
+@Name("com.github.idelstak.matrixrain.IntroFrame")
+@Label("Intro Frame")
+@Category("Matrix Rain")
+@Description("One iteration of the intro, split into its stages")
+final class IntroFrameEvent extends Event {
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  @Label("State")
+  String state;
+
+  @Label("Drop Count")
+  int dropCount;
+
+  @Label("Simulate")
+  @Timespan(Timespan.NANOSECONDS)
+  long simulate;
+
+  @Label("Rasterize")
+  @Timespan(Timespan.NANOSECONDS)
+  long rasterize;
+
+  @Label("Colorize")
+  @Timespan(Timespan.NANOSECONDS)
+  long colorize;
+
+  @Label("Allocated")
+  @Description("Bytes allocated by the animation thread during the iteration, -1 if unknown")
+  @DataAmount
+  long allocatedBytes;
+
+  // -1 when the VM cannot tell
+  static long getAllocatedBytes() {
+    if (threads instanceof com.sun.management.ThreadMXBean sunThreads
+        && sunThreads.isThreadAllocatedMemoryEnabled())
+      return sunThreads.getCurrentThreadAllocatedBytes();
+    return -1;
+  }
+}
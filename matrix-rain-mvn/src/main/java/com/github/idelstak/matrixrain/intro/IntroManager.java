@@ -25,11 +25,14 @@ package com.github.idelstak.matrixrain.intro;
 import java.awt.Component;
 import java.awt.Image;
 import java.awt.Point;
+import java.awt.image.BufferedImage;
 import com.github.idelstak.matrixrain.auxiliary.graphics.IndexBitmapObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.IndexImageManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.SourceImageAnalysis;
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorImageManager;
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.auxiliary.math.intersect.Circle1PixelArbitraryIntersectorFactory;
 import com.github.idelstak.matrixrain.connector.ConnectorObject;
 import com.github.idelstak.matrixrain.drop.DropManager;
@@ -43,6 +46,7 @@ import com.github.idelstak.matrixrain.phosphore.PhosphoreCloud;
 import com.github.idelstak.matrixrain.phosphore.PhosphoreCloudFactory;
 import com.github.idelstak.matrixrain.position.TitleConnectorPosition;
 import com.github.idelstak.matrixrain.position.TitleGlyphPosition;
+import com.github.idelstak.matrixrain.render.FrameStats;
 
 public final class IntroManager {
   public static final int STATE_RAINREGULAR = 0;
@@ -106,10 +110,18 @@ public final class IntroManager {
   // rains
   Image mainImage;
 
+  // analysis of mainImage, shared by the rains and the mosaic of every run
+  private IntroStagePreparation<SourceImageAnalysis> mainImageAnalysis;
+
   private BellRainManager bellRainManager;
 
   private LetterRainManager letterRainManager;
 
+  // rain managers built in the background while the stage before them runs
+  private IntroStagePreparation<BellRainManager> bellRainPreparation;
+
+  private IntroStagePreparation<LetterRainManager> letterRainPreparation;
+
   // for how long to stay in this state
   private int timeInThisState;
 
@@ -126,6 +138,11 @@ public final class IntroManager {
   // mosaic
   private TrueColorBitmapObject startMosaicImage;
 
+  private FrameStats frameStats = new FrameStats();
+
+  // spent in recomputeImage during the current iteration
+  private long rasterizeNanos, colorizeNanos;
+
   public IntroManager(
       Component comp,
       DropManager dropManager,
@@ -133,31 +150,69 @@ public final class IntroManager {
       ColorManager colorManager,
       GlyphFactory glyphFactory) {
 
+    this(
+        comp.getWidth(),
+        comp.getHeight(),
+        dropManager,
+        bellRainImage,
+        colorManager,
+        glyphFactory,
+        new IndexImageManager(comp, null, colorManager),
+        new TrueColorImageManager(comp));
+  }
+
+  // off-screen only - frames are read through getBitmap1D
+  public IntroManager(
+      int windowWidth,
+      int windowHeight,
+      DropManager dropManager,
+      Image bellRainImage,
+      ColorManager colorManager,
+      GlyphFactory glyphFactory) {
+
+    this(
+        windowWidth,
+        windowHeight,
+        dropManager,
+        bellRainImage,
+        colorManager,
+        glyphFactory,
+        new IndexImageManager(windowWidth, windowHeight, null, colorManager),
+        new TrueColorImageManager(windowWidth, windowHeight));
+  }
+
+  private IntroManager(
+      int windowWidth,
+      int windowHeight,
+      DropManager dropManager,
+      Image bellRainImage,
+      ColorManager colorManager,
+      GlyphFactory glyphFactory,
+      IndexImageManager indexImageManager,
+      TrueColorImageManager trueColorImageManager) {
+
     this.dropManager = dropManager;
     this.colorManager = colorManager;
     this.glyphFactory = glyphFactory;
     this.state = IntroManager.STATE_RAINREGULAR;
     this.startCountingToNextState = false;
 
-    this.windowWidth = comp.getWidth();
-    this.windowHeight = comp.getHeight();
+    this.windowWidth = windowWidth;
+    this.windowHeight = windowHeight;
 
     this.takeTrueColor = false;
 
-    this.indexImageManager = new IndexImageManager(comp, null, colorManager);
-    this.trueColorImageManager = new TrueColorImageManager(comp);
+    this.indexImageManager = indexImageManager;
+    this.trueColorImageManager = trueColorImageManager;
     this.mainImage = bellRainImage;
   }
 
   private void paintGlyph(MemoryGlyph glyph, int x, int y) {
-    int xL = glyph.getLeft(), xR = glyph.getRight();
-    int yT = glyph.getTop(), yB = glyph.getBottom();
-    for (int i = xL; i <= xR; i++) {
-      for (int j = yT; j <= yB; j++) {
-        int value = glyph.getPixel(i, j);
-        if (value > 0) this.indexImageManager.paintPixel(x + i - xL, y + j, value);
-      }
-    }
+    int width = glyph.getWidth();
+    if (width <= 0) return;
+    byte[] atlas = glyph.getAtlas();
+    for (int j = glyph.getTop(); j <= glyph.getBottom(); j++)
+      this.indexImageManager.paintSpan(x, y + j, atlas, glyph.getRowOffset(j), width);
   }
 
   public void paintGlyphTrail(MemoryGlyph glyph, int x, int y, int trailY, double fadeOut) {
@@ -339,6 +394,7 @@ public final class IntroManager {
   }
 
   public synchronized void recomputeImage() {
+    long time0 = System.nanoTime();
     // reset pixel maps
     this.indexImageManager.resetImage();
     // ask drop manager to draw the drops
@@ -370,15 +426,45 @@ public final class IntroManager {
         this.paintMosaic();
       }
     }
-    //
+    long time1 = System.nanoTime();
     if (this.takeTrueColor) this.trueColorImageManager.recomputeImage();
     else this.indexImageManager.recomputeImage();
+    long time2 = System.nanoTime();
+
+    this.rasterizeNanos += time1 - time0;
+    this.colorizeNanos += time2 - time1;
   }
 
   public int getState() {
     return this.state;
   }
 
+  private void setState(int state) {
+    IntroStateEvent event = new IntroStateEvent();
+    if (event.shouldCommit()) {
+      event.fromState = getStateName(this.state);
+      event.toState = getStateName(state);
+      event.dropCount = this.dropManager.getDropCount();
+      event.commit();
+    }
+    this.state = state;
+  }
+
+  public static String getStateName(int state) {
+    return switch (state) {
+      case STATE_RAINREGULAR -> "rain";
+      case STATE_RAINWITHLOGO -> "rain with logo";
+      case STATE_SHOWTITLE -> "title";
+      case STATE_ZOOMTITLE -> "title zoom";
+      case STATE_WAITFORRAINTTOSTOP -> "rain stopping";
+      case STATE_RAINEDGES -> "bell rain";
+      case STATE_RAINLETTERS -> "letter rain";
+      case STATE_MOSAICIZE -> "mosaic";
+      case STATE_INTROENDED -> "ended";
+      default -> String.valueOf(state);
+    };
+  }
+
   private void createTitleBitmap() {
     this.paintFinalTitle();
 
@@ -388,6 +474,65 @@ public final class IntroManager {
         new IndexBitmapObject(finalBitmap, this.windowWidth, this.windowHeight);
   }
 
+  // the main image does not change between runs, so it is only analysed for the first one
+  private IntroStagePreparation<SourceImageAnalysis> getMainImageAnalysis() {
+    if (this.mainImageAnalysis == null) {
+      Image image = this.mainImage;
+      this.mainImageAnalysis =
+          new IntroStagePreparation<>(
+              "SourceImageAnalysis",
+              () -> new SourceImageAnalysis(image, this.windowWidth, this.windowHeight));
+    }
+    return this.mainImageAnalysis;
+  }
+
+  // the random streams are split here, on the animation thread, to keep seeded runs reproducible
+  private void prepareBellRain() {
+    IntroStagePreparation<SourceImageAnalysis> analysis = this.getMainImageAnalysis();
+    RandomSource random = RandomSource.current().split();
+    this.bellRainPreparation =
+        new IntroStagePreparation<>(
+            "BellRainManager",
+            () ->
+                new BellRainManager(
+                    this.windowWidth,
+                    this.windowHeight,
+                    analysis.get(),
+                    3,
+                    6,
+                    this.colorManager,
+                    random));
+  }
+
+  private void prepareLetterRain() {
+    IntroStagePreparation<SourceImageAnalysis> analysis = this.getMainImageAnalysis();
+    RandomSource random = RandomSource.current().split();
+    this.letterRainPreparation =
+        new IntroStagePreparation<>(
+            "LetterRainManager",
+            () ->
+                new LetterRainManager(
+                    this.windowWidth,
+                    this.windowHeight,
+                    analysis.get(),
+                    6,
+                    this.colorManager,
+                    this.glyphFactory,
+                    random));
+  }
+
+  // a stage starts once it is prepared; seeded runs wait for it instead, to replay the same frames
+  private boolean isPrepared(IntroStagePreparation<?> preparation) {
+    return RandomSource.isSeeded() || preparation.isReady();
+  }
+
+  private void cancelPreparations() {
+    if (this.bellRainPreparation != null) this.bellRainPreparation.cancel();
+    this.bellRainPreparation = null;
+    if (this.letterRainPreparation != null) this.letterRainPreparation.cancel();
+    this.letterRainPreparation = null;
+  }
+
   public synchronized void showTitle(
       String title,
       GlyphFactory abcGlyphFactory,
@@ -396,11 +541,17 @@ public final class IntroManager {
       Circle1PixelArbitraryIntersectorFactory iFct) {
 
     long time0 = System.currentTimeMillis();
+    IntroConstructionEvent titleEvent = new IntroConstructionEvent("TitleManager");
+    titleEvent.begin();
     this.titleManager = new TitleManager(this.windowWidth, this.windowHeight);
     this.titleManager.showTitle(title, abcGlyphFactory, lineHeight, IntroManager.CONNECTOR_GLOW);
     this.titleManager.makeClone();
+    titleEvent.commit();
     long time1 = System.currentTimeMillis();
 
+    IntroConstructionEvent titleZoomEvent = new IntroConstructionEvent("TitleZoomManager");
+    titleZoomEvent.begin();
+
     this.titleZoomManager = new TitleZoomManager(pcFct, iFct);
     this.titleZoomManager.setWindowWidth(this.windowWidth);
     this.titleZoomManager.setWindowHeight(this.windowHeight);
@@ -415,6 +566,7 @@ public final class IntroManager {
     this.createTitleBitmap();
     this.titleZoomManager.setFirstBitmapObject(this.startIndexBitmapObject);
     this.titleZoomManager.createAllFrames();
+    titleZoomEvent.commit();
     long time2 = System.currentTimeMillis();
 
     System.out.println("Title manager init: " + (time1 - time0));
@@ -445,7 +597,8 @@ public final class IntroManager {
     this.dropManager.createDrops();
     this.dropManager.adjustDropCount(this.windowWidth / 5);
     this.timeInThisState = IntroManager.EXPIRE_TIME_RAINREGULAR;
-    this.state = IntroManager.STATE_RAINREGULAR;
+    this.cancelPreparations();
+    this.setState(IntroManager.STATE_RAINREGULAR);
   }
 
   public synchronized void slowdown() {
@@ -486,7 +639,8 @@ public final class IntroManager {
 
   public synchronized void stop() {
     this.dropManager.removeAllDrops();
-    this.state = IntroManager.STATE_INTROENDED;
+    this.cancelPreparations();
+    this.setState(IntroManager.STATE_INTROENDED);
   }
 
   public synchronized void removeDrops() {
@@ -530,10 +684,41 @@ public final class IntroManager {
     else return this.indexImageManager.getImage();
   }
 
+  // with indexed output the index-colored stages are read through getIndexedImage only
+  public synchronized void setIndexedOutput(boolean indexedOutput) {
+    this.indexImageManager.setIndexedOutput(indexedOutput);
+  }
+
+  /** @return 8-bit frame of the index-colored stages, <code>null</code> in true-color stages */
+  public synchronized BufferedImage getIndexedImage() {
+    if (this.takeTrueColor) return null;
+    return this.indexImageManager.getIndexedImage();
+  }
+
+  // palette of the index-colored stages
+  public synchronized void setPalette(ColorManager colorManager) {
+    this.indexImageManager.setColorManager(colorManager);
+  }
+
   public DropManager getDropManager() {
     return this.dropManager;
   }
 
+  /** @return bytes held by the precomputed title zoom frames, 0 before showTitle */
+  public synchronized long getTitleFrameBytes() {
+    if (this.titleZoomManager == null) return 0;
+    return this.titleZoomManager.getFrameBytes();
+  }
+
+  /** Where the simulate, rasterize and colorize times of every iteration go. */
+  public synchronized void setFrameStats(FrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  public synchronized FrameStats getFrameStats() {
+    return this.frameStats;
+  }
+
   public synchronized void iteration(boolean iterateAlways) {
     if (!iterateAlways) {
       if (this.paused) return;
@@ -544,6 +729,35 @@ public final class IntroManager {
       this.delayUntilNextIteration = this.delayBetweenSuccessiveIterations;
     }
 
+    IntroFrameEvent event = new IntroFrameEvent();
+    long allocatedBytes = event.isEnabled() ? IntroFrameEvent.getAllocatedBytes() : -1;
+    int iterationState = this.state;
+    event.begin();
+
+    long iterationStart = System.nanoTime();
+    this.rasterizeNanos = 0;
+    this.colorizeNanos = 0;
+    this.iterateState();
+    long iterationNanos = System.nanoTime() - iterationStart;
+    long simulateNanos = iterationNanos - this.rasterizeNanos - this.colorizeNanos;
+
+    this.frameStats.record(FrameStats.STAGE_SIMULATE, simulateNanos);
+    this.frameStats.record(FrameStats.STAGE_RASTERIZE, this.rasterizeNanos);
+    this.frameStats.record(FrameStats.STAGE_COLORIZE, this.colorizeNanos);
+
+    if (event.shouldCommit()) {
+      event.state = getStateName(iterationState);
+      event.dropCount = this.dropManager.getDropCount();
+      event.simulate = simulateNanos;
+      event.rasterize = this.rasterizeNanos;
+      event.colorize = this.colorizeNanos;
+      event.allocatedBytes =
+          (allocatedBytes < 0) ? -1 : IntroFrameEvent.getAllocatedBytes() - allocatedBytes;
+      event.commit();
+    }
+  }
+
+  private void iterateState() {
     // System.out.println(this.state);
     switch (this.state) {
       case IntroManager.STATE_RAINREGULAR -> {
@@ -553,7 +767,7 @@ public final class IntroManager {
           this.timeInThisState--;
           if (this.timeInThisState <= 0) {
             this.dropManager.setGlobalSpeedupFactor(2);
-            this.state = IntroManager.STATE_SHOWTITLE;
+            this.setState(IntroManager.STATE_SHOWTITLE);
             this.currIteration = 0;
             //					this.timeInThisState = IntroManager.EXPIRE_TIME_SHOWTITLE;
             this.dropManager.removeAllDrops();
@@ -576,7 +790,8 @@ public final class IntroManager {
         this.recomputeImage();
         this.timeInThisState--;
         if (this.timeInThisState <= 0) {
-          this.state = IntroManager.STATE_ZOOMTITLE;
+          this.setState(IntroManager.STATE_ZOOMTITLE);
+          this.prepareBellRain();
           this.titleZoomManager.setCurrentAtFirstFrame();
           break;
         }
@@ -590,7 +805,7 @@ public final class IntroManager {
         if (this.titleZoomManager.getToAccelerateDrops())
           this.dropManager.incrementGlobalSpeedupFactor();
         if (this.titleZoomManager.isCurrentAfterLastFrame()) {
-          this.state = IntroManager.STATE_WAITFORRAINTTOSTOP;
+          this.setState(IntroManager.STATE_WAITFORRAINTTOSTOP);
           this.dropManager.removeAllDrops();
         }
       }
@@ -598,14 +813,12 @@ public final class IntroManager {
       case IntroManager.STATE_WAITFORRAINTTOSTOP -> {
         dropManager.iteration(1);
         this.recomputeImage();
-        if (dropManager.getDropCount() == 0) {
-          long time0 = System.currentTimeMillis();
-          this.bellRainManager =
-              new BellRainManager(
-                  this.windowWidth, this.windowHeight, this.mainImage, 3, 6, this.colorManager);
-          long time1 = System.currentTimeMillis();
-          System.out.println("Created bell rain manager in " + (time1 - time0));
-          this.state = IntroManager.STATE_RAINEDGES;
+        if (this.bellRainPreparation == null) this.prepareBellRain();
+        if ((dropManager.getDropCount() == 0) && this.isPrepared(this.bellRainPreparation)) {
+          this.bellRainManager = this.bellRainPreparation.get();
+          this.bellRainPreparation = null;
+          this.prepareLetterRain();
+          this.setState(IntroManager.STATE_RAINEDGES);
         }
       }
 
@@ -613,20 +826,11 @@ public final class IntroManager {
         this.bellRainManager.iteration();
         this.takeTrueColor = !this.bellRainManager.toGetIndexBitmap();
         this.recomputeImage();
-        if (this.bellRainManager.isFinished()) {
+        if (this.bellRainManager.isFinished() && this.isPrepared(this.letterRainPreparation)) {
           this.bellRainManager = null;
-          long time0 = System.currentTimeMillis();
-          this.letterRainManager =
-              new LetterRainManager(
-                  this.windowWidth,
-                  this.windowHeight,
-                  this.mainImage,
-                  6,
-                  this.colorManager,
-                  this.glyphFactory);
-          long time1 = System.currentTimeMillis();
-          System.out.println("Created letter rain manager in " + (time1 - time0));
-          this.state = IntroManager.STATE_RAINLETTERS;
+          this.letterRainManager = this.letterRainPreparation.get();
+          this.letterRainPreparation = null;
+          this.setState(IntroManager.STATE_RAINLETTERS);
         }
       }
 
@@ -636,10 +840,12 @@ public final class IntroManager {
         this.recomputeImage();
         if (this.letterRainManager.isFinished()) {
           this.letterRainManager = null;
-          this.startMosaicImage =
-              new TrueColorBitmapObject(this.mainImage, this.windowWidth, this.windowHeight);
+          IntroConstructionEvent event = new IntroConstructionEvent("mosaic");
+          event.begin();
+          this.startMosaicImage = this.getMainImageAnalysis().get().createBitmap();
+          event.commit();
 
-          this.state = IntroManager.STATE_MOSAICIZE;
+          this.setState(IntroManager.STATE_MOSAICIZE);
           this.timeInThisState = IntroManager.TIME_BLENDTOMOSAIC;
           this.currIteration = 0;
         }
@@ -652,7 +858,7 @@ public final class IntroManager {
           this.timeInThisState--;
           if (this.timeInThisState <= 0) {
             System.out.println("Intro ended...");
-            this.state = IntroManager.STATE_INTROENDED;
+            this.setState(IntroManager.STATE_INTROENDED);
           }
         }
       }
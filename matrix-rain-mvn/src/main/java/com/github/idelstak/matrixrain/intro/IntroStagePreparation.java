@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.intro;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * A component of a coming intro stage, built on a background thread while the current stage runs,
+ * so that the animation does not stall when the stage starts.
+ *
+ * <p>All preparations share one worker thread and run in the order they were started.
+ */
+final class IntroStagePreparation<T> {
+  private static final ExecutorService worker =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "intro stage preparation");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final String component;
+
+  private final CompletableFuture<T> future;
+
+  IntroStagePreparation(String component, Supplier<T> builder) {
+    this.component = component;
+    this.future =
+        CompletableFuture.supplyAsync(
+            () -> {
+              long time0 = System.currentTimeMillis();
+              IntroConstructionEvent event = new IntroConstructionEvent(component);
+              event.background = true;
+              event.begin();
+              T result = builder.get();
+              event.commit();
+              long time1 = System.currentTimeMillis();
+              System.out.println("Prepared " + component + " in " + (time1 - time0));
+              return result;
+            },
+            worker);
+  }
+
+  boolean isReady() {
+    return this.future.isDone();
+  }
+
+  // waits for the worker if it is not done yet, the wait is recorded as a stall
+  T get() {
+    if (this.future.isDone()) return this.future.join();
+    IntroConstructionEvent event = new IntroConstructionEvent(this.component);
+    event.begin();
+    T result = this.future.join();
+    event.commit();
+    return result;
+  }
+
+  // the component is no longer needed; a build that has not started yet is skipped
+  void cancel() {
+    this.future.cancel(false);
+  }
+}
@@ -23,13 +23,19 @@
 package com.github.idelstak.matrixrain.intro.rain;
 
 import java.awt.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
 
 import com.github.idelstak.matrixrain.auxiliary.graphics.IndexBitmapObject;
+import com.github.idelstak.matrixrain.auxiliary.graphics.SourceImageAnalysis;
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
 import com.github.idelstak.matrixrain.auxiliary.graphics.geom.edgedetection.EdgeDetector;
 import com.github.idelstak.matrixrain.auxiliary.graphics.spline.SplineInterpolatorObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.spline.SplineManager;
+import com.github.idelstak.matrixrain.auxiliary.math.FixedPoint;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 
 public final class BellRainManager {
   private static final int N = 8;
@@ -38,6 +44,9 @@ public final class BellRainManager {
 
   private static final double CUTOFF_THRESHOLD = 0.95;
 
+  // cell or cluster columns shaded by one task of the parallel iteration
+  private static final int COLUMN_BAND_WIDTH = 16;
+
   private static final int STATE_BELLRAIN_FIRSTPHASE = 0;
 
   private static final int STATE_BELLRAIN_SECONDPHASE = 1;
@@ -59,11 +68,39 @@ public final class BellRainManager {
 
   private BellRainDropInfo[] randomDropArray;
 
-  private BellRainPixelInfo[][] pixelInfoArray;
+  // pixel state, one column after the other: pixel (x, y) is at x * height + y
+  private int[] pixelColors;
+
+  // random part of the bell coefficient, see getBellCoefficient
+  private byte[] pixelBellJitters;
+
+  private BitSet pixelsExposedByRain;
+
+  // bell coefficient without the random part, by position in the bell cell
+  private double[] bellProfile;
+
+  // cell state: cell (col, row) is at col * heightInCells + row
+  private BitSet cellsWithEdge;
+
+  private BitSet cellsInFirstWave;
+
+  private int[] cellIterationsAfterLastEdge;
+
+  private double[] cellRelativeLuminosities;
+
+  private BitSet cellsInRandomDrop;
 
-  private BellRainCellInfo[][] cellInfoArray;
+  private int[] cellRandomDropAges;
 
-  private BellRainClusterInfo[][] clusterInfoArray;
+  // cluster state: cluster (col, row) is at col * heightInClusters + row
+  private int[] clusterAverageColors;
+
+  private int[] clusterAverageLuminosities;
+
+  private int[] clusterDistancesToClosestTopEdge;
+
+  // monochromeFadeAroundEdgesInfluenceInterpolator at the distance of each cluster, 0.0..1.0
+  private double[] clusterMonochromeFadeInfluences;
 
   private BellRainScreenInfo screenInfo;
 
@@ -138,6 +175,11 @@ public final class BellRainManager {
 
   private double monochromeCoefB;
 
+  // all randomness of this effect, so that a seeded run replays the same rain
+  private final RandomSource random;
+
+  private boolean parallelIteration;
+
   private final class BellRainDropInfo {
     public int col;
 
@@ -150,76 +192,6 @@ public final class BellRainManager {
     public int dropAge;
   }
 
-  private final class BellRainPixelInfo {
-    public boolean isOnEdge;
-
-    public int red;
-
-    public int green;
-
-    public int blue;
-
-    public int trueColor;
-
-    public double luminosity;
-
-    public double relativeLuminosity;
-
-    public boolean isExposedByRain;
-
-    public double bellCoefficient;
-  }
-
-  private final class BellRainCellInfo {
-    public boolean hasPixelOnEdge;
-
-    public boolean inFirstWave;
-
-    public int iterationsAfterLastEdgeInFirstWave;
-
-    public int averageLuminosity;
-
-    public double relativeAverageLuminosity;
-
-    public boolean inRandomDrop;
-
-    public int randomDropAge;
-  }
-
-  private final class BellRainClusterInfo {
-    public int averageR;
-
-    public int averageG;
-
-    public int averageB;
-
-    public int borderR;
-
-    public int borderG;
-
-    public int borderB;
-
-    public int borderTrueColor;
-
-    public int averageLuminosity;
-
-    public boolean hasPixelOnEdge;
-
-    public int distanceToClosestTopEdge;
-
-    public int regularCenterX;
-
-    public int regularCenterY;
-
-    public int disintegrateCenterX;
-
-    public int disintegrateCenterY;
-
-    public double disintegrationKx;
-
-    public double disintegrationKy;
-  }
-
   private final class BellRainScreenInfo {
     public double averagePixelLuminosity;
 
@@ -237,7 +209,27 @@ public final class BellRainManager {
       int bellCellSize,
       int bellClusterSize,
       ColorManager colorManager) {
+    this(
+        width,
+        height,
+        new SourceImageAnalysis(finalImage, width, height),
+        bellCellSize,
+        bellClusterSize,
+        colorManager,
+        RandomSource.current().split());
+  }
 
+  public BellRainManager(
+      int width,
+      int height,
+      SourceImageAnalysis finalImageAnalysis,
+      int bellCellSize,
+      int bellClusterSize,
+      ColorManager colorManager,
+      RandomSource random) {
+
+    this.random = random;
+    this.parallelIteration = (Runtime.getRuntime().availableProcessors() > 1);
     this.width = width;
     this.height = height;
     this.bellCellSize = bellCellSize;
@@ -252,9 +244,8 @@ public final class BellRainManager {
     this.widthInClusters = (int) (Math.ceil((double) width / (double) bellClusterSize));
     this.heightInClusters = (int) (Math.ceil((double) height / (double) bellClusterSize));
 
-    // compute edge image
-    EdgeDetector edgeDetector = new EdgeDetector(width, height, finalImage);
-    int[] edgeValues = edgeDetector.getValueMap(EdgeDetector.EDGES_SOFT);
+    // edge image
+    int[] edgeValues = finalImageAnalysis.getEdgeMap(EdgeDetector.EDGES_SOFT);
 
     // compute bell coefficients
     Point[] bellPoints = new Point[3];
@@ -281,66 +272,45 @@ public final class BellRainManager {
     int[] luminosities = new int[256];
     for (int i = 0; i < luminosities.length; i++) luminosities[i] = 0;
 
-    // get original pixels
-    int[] origPixels = edgeDetector.getOriginalPixels();
-
-    // long time1 = System.currentTimeMillis();
-
-    // System.out.println("3: " + System.currentTimeMillis());
+    // the bell coefficient only depends on the position in the bell cell
     double bellCellSize2 = (this.bellCellSize - 1) / 2.0;
-    // create info structures on all pixels
-    int pixelCount = 0;
-    double pixelSum = 0.0;
-    double maxPixelLum = 0.0;
-    this.pixelInfoArray = new BellRainPixelInfo[width][height];
-    for (int col = 0; col < this.width; col++) {
-      int xInBellCell = col % this.bellCellSize;
-      for (int row = 0; row < this.height; row++) {
-        int index = row * this.width + col;
-        BellRainPixelInfo currPixelInfo = new BellRainPixelInfo();
-        currPixelInfo.isOnEdge = (edgeValues[index] > 0);
-
-        currPixelInfo.trueColor = origPixels[index];
-        int red = currPixelInfo.trueColor & 0x00FF0000;
-        red >>= 16;
-        currPixelInfo.red = red;
-        int green = currPixelInfo.trueColor & 0x0000FF00;
-        green >>= 8;
-        currPixelInfo.green = green;
-        int blue = currPixelInfo.trueColor & 0x000000FF;
-        currPixelInfo.blue = blue;
-
-        currPixelInfo.luminosity = (222 * red + 707 * green + 71 * blue) / 1000;
-        pixelSum += currPixelInfo.luminosity;
-        if (currPixelInfo.luminosity > maxPixelLum) maxPixelLum = currPixelInfo.luminosity;
-        pixelCount++;
-
-        currPixelInfo.isExposedByRain = false;
-
-        int yInBellCell = row % this.bellCellSize;
+    this.bellProfile = new double[this.bellCellSize * this.bellCellSize];
+    for (int xInBellCell = 0; xInBellCell < this.bellCellSize; xInBellCell++) {
+      for (int yInBellCell = 0; yInBellCell < this.bellCellSize; yInBellCell++) {
         double dx = xInBellCell - bellCellSize2;
         double dy = yInBellCell - bellCellSize2;
         int distToBellCenter2 = (int) (dx * dx + dy * dy);
-
-        double bellCoefficient = bellInterpolator.getValue(distToBellCenter2);
-        // tweak randomly
-        bellCoefficient += (int) (Math.random() * 20.0);
-        if (bellCoefficient > 100) bellCoefficient = 100;
-        currPixelInfo.bellCoefficient = bellCoefficient;
-
-        this.pixelInfoArray[col][row] = currPixelInfo;
+        this.bellProfile[xInBellCell * this.bellCellSize + yInBellCell] =
+            bellInterpolator.getValue(distToBellCenter2);
       }
     }
-    this.screenInfo.averagePixelLuminosity = pixelSum / pixelCount;
-    this.screenInfo.maxPixelLuminosity = maxPixelLum;
 
-    // System.out.println("4: " + System.currentTimeMillis());
-
-    // create info structures on all cells
-    this.cellInfoArray = new BellRainCellInfo[this.widthInCells][this.heightInCells];
+    // create state of all pixels, the colors are shared with the analysis
+    this.pixelColors = finalImageAnalysis.getPixels();
+    byte[] pixelLuminosities = finalImageAnalysis.getLuminosities();
+    this.pixelBellJitters = new byte[width * height];
+    this.pixelsExposedByRain = new BitSet(width * height);
+    for (int pixel = 0; pixel < this.pixelBellJitters.length; pixel++) {
+      // tweak bell coefficient randomly
+      this.pixelBellJitters[pixel] = (byte) (this.random.nextDouble() * 20.0);
+    }
+    this.screenInfo.averagePixelLuminosity = finalImageAnalysis.getAverageLuminosity();
+    this.screenInfo.maxPixelLuminosity = finalImageAnalysis.getMaxLuminosity();
+
+    // create state of all cells
+    int cellCount = this.widthInCells * this.heightInCells;
+    this.cellsWithEdge = new BitSet(cellCount);
+    this.cellsInFirstWave = new BitSet(cellCount);
+    this.cellsInFirstWave.set(0, cellCount);
+    this.cellIterationsAfterLastEdge = new int[cellCount];
+    Arrays.fill(this.cellIterationsAfterLastEdge, 100);
+    this.cellRelativeLuminosities = new double[cellCount];
+    this.cellsInRandomDrop = new BitSet(cellCount);
+    this.cellRandomDropAges = new int[cellCount];
+    int[] cellLuminosities = new int[cellCount];
     for (int cellCol = 0; cellCol < this.widthInCells; cellCol++) {
       for (int cellRow = 0; cellRow < this.heightInCells; cellRow++) {
-        BellRainCellInfo currCellInfo = new BellRainCellInfo();
+        int cell = cellCol * this.heightInCells + cellRow;
 
         // go over all pixels of this cell
         int startX = cellCol * this.bellCellSize;
@@ -353,26 +323,20 @@ public final class BellRainManager {
         int luminositySum = 0;
         for (int x = startX; x < endX; x++) {
           for (int y = startY; y < endY; y++) {
-            if (this.pixelInfoArray[x][y].isOnEdge) currCellInfo.hasPixelOnEdge = true;
-            luminositySum += this.pixelInfoArray[x][y].luminosity;
+            if (edgeValues[y * this.width + x] > 0) this.cellsWithEdge.set(cell);
+            luminositySum += pixelLuminosities[x * this.height + y] & 0xFF;
             count++;
           }
         }
 
         int avgLuminosity = (count > 0) ? (luminositySum / count) : 0;
-        currCellInfo.averageLuminosity = avgLuminosity;
-        luminosities[(int) avgLuminosity]++;
-
-        currCellInfo.iterationsAfterLastEdgeInFirstWave = 100;
-        currCellInfo.inFirstWave = true;
-
-        this.cellInfoArray[cellCol][cellRow] = currCellInfo;
+        cellLuminosities[cell] = avgLuminosity;
+        luminosities[avgLuminosity]++;
       }
     }
 
     int cutoffLuminosity = 255;
-    int cutoffThreshold =
-        (int) (this.widthInCells * this.heightInCells * BellRainManager.CUTOFF_THRESHOLD);
+    int cutoffThreshold = (int) (cellCount * BellRainManager.CUTOFF_THRESHOLD);
     int cutoffSum = 0;
     for (int i = 0; i < luminosities.length; i++) {
       cutoffSum += luminosities[i];
@@ -382,47 +346,27 @@ public final class BellRainManager {
       }
     }
     // System.out.println("cut lum: " + cutoffLuminosity);
-    for (int col = 0; col < this.widthInCells; col++) {
-      for (int row = 0; row < this.heightInCells; row++) {
-        double currLum = this.cellInfoArray[col][row].averageLuminosity;
-        if (currLum > cutoffLuminosity)
-          this.cellInfoArray[col][row].relativeAverageLuminosity = 255.0;
-        else
-          this.cellInfoArray[col][row].relativeAverageLuminosity =
-              255.0 * this.cellInfoArray[col][row].averageLuminosity / cutoffLuminosity;
-      }
-    }
-
-    int cellCount = 0;
     double cellSum = 0.0;
     double maxCellLum = 0.0;
-    for (int currCol = 0; currCol < this.widthInCells; currCol++) {
-      for (int currRow = 0; currRow < this.heightInCells; currRow++) {
-        double currLum = this.cellInfoArray[currCol][currRow].averageLuminosity;
-        cellSum += currLum;
-        if (currLum > maxCellLum) maxCellLum = currLum;
-        cellCount++;
-      }
+    for (int cell = 0; cell < cellCount; cell++) {
+      double currLum = cellLuminosities[cell];
+      cellSum += currLum;
+      if (currLum > maxCellLum) maxCellLum = currLum;
+      if (currLum > cutoffLuminosity) this.cellRelativeLuminosities[cell] = 255.0;
+      else this.cellRelativeLuminosities[cell] = 255.0 * cellLuminosities[cell] / cutoffLuminosity;
     }
     this.screenInfo.averageCellLuminosity = cellSum / cellCount;
     this.screenInfo.maxCellLuminosity = maxCellLum;
-    for (int col = 0; col < this.widthInCells; col++) {
-      for (int row = 0; row < this.heightInCells; row++) {
-        double currLum = this.cellInfoArray[col][row].averageLuminosity;
-        if (currLum > cutoffLuminosity)
-          this.cellInfoArray[col][row].relativeAverageLuminosity = 255.0;
-        else
-          this.cellInfoArray[col][row].relativeAverageLuminosity =
-              255.0 * this.cellInfoArray[col][row].averageLuminosity / cutoffLuminosity;
-      }
-    }
 
-    // create info structures on all clusters
+    // create state of all clusters
     this.maxIterationDisintegration = 10;
-    this.clusterInfoArray = new BellRainClusterInfo[this.widthInCells][this.heightInCells];
+    int clusterCount = this.widthInClusters * this.heightInClusters;
+    this.clusterAverageColors = new int[clusterCount];
+    this.clusterAverageLuminosities = new int[clusterCount];
+    this.clusterDistancesToClosestTopEdge = new int[clusterCount];
     for (int clusterCol = 0; clusterCol < this.widthInClusters; clusterCol++) {
       for (int clusterRow = 0; clusterRow < this.heightInClusters; clusterRow++) {
-        BellRainClusterInfo currClusterInfo = new BellRainClusterInfo();
+        int cluster = clusterCol * this.heightInClusters + clusterRow;
 
         // go over all pixels of this cluster
         int startX = clusterCol * this.bellClusterSize;
@@ -434,18 +378,16 @@ public final class BellRainManager {
         int count = 0;
         int rSum = 0, gSum = 0, bSum = 0;
         int luminositySum = 0;
+        int distanceToClosestTopEdge = 0;
         for (int x = startX; x < endX; x++) {
           for (int y = startY; y < endY; y++) {
-            if (this.pixelInfoArray[x][y].isOnEdge) {
-              currClusterInfo.hasPixelOnEdge = true;
-              currClusterInfo.distanceToClosestTopEdge = 0;
-            } else {
-              currClusterInfo.distanceToClosestTopEdge = 100;
-            }
-            rSum += this.pixelInfoArray[x][y].red;
-            gSum += this.pixelInfoArray[x][y].green;
-            bSum += this.pixelInfoArray[x][y].blue;
-            luminositySum += this.pixelInfoArray[x][y].luminosity;
+            // the last pixel of the cluster decides
+            distanceToClosestTopEdge = (edgeValues[y * this.width + x] > 0) ? 0 : 100;
+            int trueColor = this.pixelColors[x * this.height + y];
+            rSum += (trueColor & 0x00FF0000) >> 16;
+            gSum += (trueColor & 0x0000FF00) >> 8;
+            bSum += trueColor & 0x000000FF;
+            luminositySum += pixelLuminosities[x * this.height + y] & 0xFF;
             count++;
           }
         }
@@ -454,52 +396,16 @@ public final class BellRainManager {
         int avgG = (count > 0) ? (gSum / count) : 0;
         int avgB = (count > 0) ? (bSum / count) : 0;
         int avgLuminosity = (count > 0) ? (luminositySum / count) : 0;
-        currClusterInfo.averageR = avgR;
-        currClusterInfo.averageG = avgG;
-        currClusterInfo.averageB = avgB;
-        currClusterInfo.averageLuminosity = avgLuminosity;
-
-        // border - twice darker
-        currClusterInfo.borderR = currClusterInfo.averageR / 2;
-        currClusterInfo.borderG = currClusterInfo.averageG / 2;
-        currClusterInfo.borderB = currClusterInfo.averageB / 2;
-
-        currClusterInfo.borderTrueColor =
-            (255 << 24)
-                | (currClusterInfo.borderR << 16)
-                | (currClusterInfo.borderG << 8)
-                | currClusterInfo.borderB;
-
-        // for disintegration
-        currClusterInfo.disintegrationKx =
-            (double) (this.width + 2 * clusterCol * this.bellClusterSize)
-                / (double) (this.maxIterationDisintegration * this.maxIterationDisintegration);
-        // System.out.println("col: " + clusterCol + ", kx: " +
-        // currClusterInfo.disintegrationKx);
-        currClusterInfo.disintegrationKy =
-            (double) (this.height / 2)
-                / (double) (this.maxIterationDisintegration * this.maxIterationDisintegration);
-        // if (Math.random() < 0.5)
-        // currClusterInfo.disintegrationKx *= -1.0;
-        currClusterInfo.disintegrateCenterX =
-            clusterCol * this.bellClusterSize
-                + this.bellClusterSize / 2
-                - 50
-                - clusterCol * this.bellClusterSize / 10;
-        currClusterInfo.disintegrateCenterY =
-            clusterRow * this.bellClusterSize
-                + this.bellClusterSize / 2
-                - 50
-                - clusterRow * this.bellClusterSize / 10;
-
-        this.clusterInfoArray[clusterCol][clusterRow] = currClusterInfo;
+        this.clusterAverageColors[cluster] = (avgR << 16) | (avgG << 8) | avgB;
+        this.clusterAverageLuminosities[cluster] = avgLuminosity;
+        this.clusterDistancesToClosestTopEdge[cluster] = distanceToClosestTopEdge;
       }
     }
-    // propagate distanceToClosestTopEdge field
+    // propagate distance to closest top edge
     for (int clusterCol = 0; clusterCol < this.widthInClusters; clusterCol++) {
       for (int clusterRow = 0; clusterRow < this.heightInClusters; clusterRow++) {
-        BellRainClusterInfo currClusterInfo = this.clusterInfoArray[clusterCol][clusterRow];
-        if (currClusterInfo.distanceToClosestTopEdge > 0) continue;
+        int cluster = clusterCol * this.heightInClusters + clusterRow;
+        if (this.clusterDistancesToClosestTopEdge[cluster] > 0) continue;
 
         for (int currClusterCol = 0; currClusterCol < this.widthInClusters; currClusterCol++) {
           int dx = currClusterCol - clusterCol;
@@ -508,24 +414,14 @@ public final class BellRainManager {
             int dy = currClusterRow - clusterRow;
             if (dy < 0) dy = -dy;
             int currDist = dx + dy;
-            if (currDist
-                < this.clusterInfoArray[currClusterCol][currClusterRow].distanceToClosestTopEdge)
-              this.clusterInfoArray[currClusterCol][currClusterRow].distanceToClosestTopEdge =
-                  currDist;
+            int currCluster = currClusterCol * this.heightInClusters + currClusterRow;
+            if (currDist < this.clusterDistancesToClosestTopEdge[currCluster])
+              this.clusterDistancesToClosestTopEdge[currCluster] = currDist;
           }
         }
       }
     }
     // System.out.println("Propagate - " + (time21-time20));
-    // for (int clusterRow=0; clusterRow < this.heightInClusters;
-    // clusterRow++) {
-    // for (int clusterCol=0; clusterCol < this.widthInClusters;
-    // clusterCol++) {
-    // System.out.print(this.clusterInfoArray[clusterCol][clusterRow].distanceToClosestTopEdge
-    // + ",");
-    // }
-    // System.out.println();
-    // }
 
     int[][] bitmapPixels = new int[this.width][this.height];
     for (int i = 0; i < this.width; i++)
@@ -543,8 +439,8 @@ public final class BellRainManager {
       for (int i = 1; i < N; i++) {
         double k = 2 * Math.PI / (N * this.widthInCells);
         currYs2 +=
-            ((double) (N + Math.random()) / (double) i)
-                * Math.sin(k * i * x + 2 * Math.PI * Math.random());
+            ((double) (N + this.random.nextDouble()) / (double) i)
+                * Math.sin(k * i * x + 2 * Math.PI * this.random.nextDouble());
       }
       this.rain_ys2[x] = (int) currYs2;
     }
@@ -568,12 +464,12 @@ public final class BellRainManager {
     for (int x = 0; x < this.widthInCells; x++) {
       for (int t = 0; t < this.maxIterationFirstPhase; t++) {
         double currDelta2 = 0.0;
-        double phase = 2.0 * Math.PI * Math.random();
+        double phase = 2.0 * Math.PI * this.random.nextDouble();
         for (int i = 1; i < M; i++) currDelta2 += Math.sin(i * x * (t + 1) + phase);
         if (currDelta2 < 0.0) currDelta2 = -currDelta2;
         currDelta2 += 5.0;
         this.rain_delta2[x][t] = (int) currDelta2;
-        this.rain_delta1[x][t] = this.rain_delta2[x][t] + (int) (Math.random() * 3.0);
+        this.rain_delta1[x][t] = this.rain_delta2[x][t] + (int) (this.random.nextDouble() * 3.0);
       }
     }
 
@@ -684,6 +580,13 @@ public final class BellRainManager {
 
     this.monochromeFadeAroundEdgesInfluenceInterpolator =
         SplineManager.getSplineInterpolation(monochromeFadeAroundEdgesInfluencePoints);
+    // the distances never change, so neither does the influence
+    this.clusterMonochromeFadeInfluences = new double[clusterCount];
+    for (int cluster = 0; cluster < clusterCount; cluster++)
+      this.clusterMonochromeFadeInfluences[cluster] =
+          this.monochromeFadeAroundEdgesInfluenceInterpolator.getValue(
+                  this.clusterDistancesToClosestTopEdge[cluster])
+              / 100.0;
 
     this.bitmapAfterFirstStep = null;
 
@@ -741,21 +644,45 @@ public final class BellRainManager {
   }
 
   private void randomizeDrop(BellRainDropInfo drop, int maxCols, int maxRows) {
-    drop.col = (int) (Math.random() * maxCols);
-    drop.dropRow = (int) (Math.random() * maxRows);
+    drop.col = (int) (this.random.nextDouble() * maxCols);
+    drop.dropRow = (int) (this.random.nextDouble() * maxRows);
     drop.dropAge = 0;
-    drop.length = 2 + (int) (Math.random() * 5.0);
-    drop.speed = 2 + (int) (Math.random() * 4.0);
+    drop.length = 2 + (int) (this.random.nextDouble() * 5.0);
+    drop.speed = 2 + (int) (this.random.nextDouble() * 4.0);
+  }
+
+  // @return the bell coefficient of the pixel, 0..100
+  private double getBellCoefficient(int pixel, int xInBellCell, int yInBellCell) {
+    double bellCoefficient =
+        this.bellProfile[xInBellCell * this.bellCellSize + yInBellCell]
+            + this.pixelBellJitters[pixel];
+    if (bellCoefficient > 100) bellCoefficient = 100;
+    return bellCoefficient;
+  }
+
+  private interface ColumnBandTask {
+    void run(int fromColumn, int toColumn);
+  }
+
+  // the bands write disjoint pixel columns and only read the shared state - no locking needed
+  private void forEachColumnBand(int columnCount, ColumnBandTask task) {
+    int bandCount = (columnCount + COLUMN_BAND_WIDTH - 1) / COLUMN_BAND_WIDTH;
+    IntStream bands = IntStream.range(0, bandCount);
+    if (this.parallelIteration && (bandCount > 1)) bands = bands.parallel();
+    bands.forEach(
+        band ->
+            task.run(
+                band * COLUMN_BAND_WIDTH, Math.min(columnCount, (band + 1) * COLUMN_BAND_WIDTH)));
   }
 
   private void setIterationsAfterLastEdge(int cellCol, int cellRow, int newValue) {
     if ((cellRow < 0) || (cellRow >= this.heightInCells)) return;
-    this.cellInfoArray[cellCol][cellRow].iterationsAfterLastEdgeInFirstWave = newValue;
+    this.cellIterationsAfterLastEdge[cellCol * this.heightInCells + cellRow] = newValue;
   }
 
   private void incrementIterationsAfterLastEdge(int cellCol, int cellRow, int delta) {
     if ((cellRow < 0) || (cellRow >= this.heightInCells)) return;
-    this.cellInfoArray[cellCol][cellRow].iterationsAfterLastEdgeInFirstWave += delta;
+    this.cellIterationsAfterLastEdge[cellCol * this.heightInCells + cellRow] += delta;
   }
 
   private void iterationStep1() {
@@ -787,10 +714,9 @@ public final class BellRainManager {
           int startY = currVisibleCellRow1 * this.bellCellSize;
           int endY = (currVisibleCellRow1 + 1) * this.bellCellSize;
           if (endY >= this.height) endY = this.height - 1;
+          if (startY >= endY) continue;
           for (int x = startX; x < endX; x++) {
-            for (int y = startY; y < endY; y++) {
-              this.pixelInfoArray[x][y].isExposedByRain = true;
-            }
+            this.pixelsExposedByRain.set(x * this.height + startY, x * this.height + endY);
           }
         }
       }
@@ -801,7 +727,7 @@ public final class BellRainManager {
         for (int currVisibleCellRow2 = startVisible2;
             currVisibleCellRow2 <= endVisible2;
             currVisibleCellRow2++) {
-          this.cellInfoArray[cellCol][currVisibleCellRow2].inFirstWave = false;
+          this.cellsInFirstWave.clear(cellCol * this.heightInCells + currVisibleCellRow2);
         }
       }
       this.rain_curr1[cellCol] += this.rain_delta1[cellCol][this.currIteration];
@@ -821,7 +747,7 @@ public final class BellRainManager {
           if (currCellRow1 < 0) continue;
           if (currCellRow1 >= this.heightInCells) break;
 
-          if (this.cellInfoArray[cellCol][currCellRow1].hasPixelOnEdge) {
+          if (this.cellsWithEdge.get(cellCol * this.heightInCells + currCellRow1)) {
             if (!hasEdge) firstEdgeRow = currCellRow1;
             hasEdge = true;
             break;
@@ -843,7 +769,7 @@ public final class BellRainManager {
             // all in oldCellRow1+1..newCellRow1 - get
             // oldCellRow1.value+1
             int oldValue =
-                this.cellInfoArray[cellCol][oldCellRow1].iterationsAfterLastEdgeInFirstWave;
+                this.cellIterationsAfterLastEdge[cellCol * this.heightInCells + oldCellRow1];
             for (int currCellRow1 = oldCellRow1 + 1; currCellRow1 <= newCellRow1; currCellRow1++)
               this.setIterationsAfterLastEdge(cellCol, currCellRow1, oldValue + 1);
 
@@ -853,38 +779,80 @@ public final class BellRainManager {
         }
       }
       // for (int i=0; i<this.heightInCells; i++) {
-      // System.out.print(this.cellInfoArray[cellCol][i].iterationsAfterLastEdgeInFirstWave
+      // System.out.print(this.cellIterationsAfterLastEdge[cellCol * this.heightInCells + i]
       // + ",");
       // }
       // System.out.println();
     }
 
-    this.currIndexBitmap.reset(0);
+    // mark the cells of the random drops, drawing from the stream in the same order in both modes
+    this.cellsInRandomDrop.clear();
+
+    for (int currDropIndex = 0; currDropIndex < this.randomDropArray.length; currDropIndex++) {
+      BellRainDropInfo currDrop = this.randomDropArray[currDropIndex];
+      int startRow = currDrop.dropRow;
+      int endRow = startRow - currDrop.length;
+      if (startRow >= this.heightInCells) startRow = this.heightInCells - 1;
+      if (endRow < 0) endRow = 0;
+      int currAge = currDrop.dropAge;
+      for (int currRow = startRow; currRow >= endRow; currRow--) {
+        int cell = currDrop.col * this.heightInCells + currRow;
+        this.cellsInRandomDrop.set(cell);
+        this.cellRandomDropAges[cell] = currAge;
+        if (this.random.nextDouble() < 0.5) currAge++;
+      }
+    }
+
+    // shade the pixels and overlay the random drops, one band of cell columns at a time
     int[][] bitmap = this.currIndexBitmap.getBitmap();
-    for (int x = 0; x < this.width; x++) {
+    this.forEachColumnBand(
+        this.widthInCells,
+        (fromCellCol, toCellCol) -> this.shadeStep1(bitmap, fromCellCol, toCellCol));
+
+    // advance random drops
+    for (int currDropIndex = 0; currDropIndex < this.randomDropArray.length; currDropIndex++) {
+      BellRainDropInfo currDrop = this.randomDropArray[currDropIndex];
+      if (this.random.nextDouble() < 0.5) currDrop.dropAge++;
+      currDrop.dropRow += currDrop.speed;
+      // create new drop if this drop is too weak or is outside the screen
+      if ((currDrop.dropAge > 6)
+          || ((currDrop.dropRow - currDrop.length) >= this.heightInCells)
+          || (this.random.nextDouble() < 0.05))
+        this.randomizeDrop(currDrop, this.heightInCells, this.widthInCells);
+    }
+  }
+
+  // shades the pixel columns of cell columns fromCellCol..toCellCol-1
+  private void shadeStep1(int[][] bitmap, int fromCellCol, int toCellCol) {
+    double edgeFadeInfluenceCoef =
+        this.edgeFadeInfluenceInterpolator.getValue(this.currIteration) / 100.0;
+    double colorIncreaseFactor =
+        this.colorIncreaseInterpolator.getValue(this.currIteration) / 100.0;
+
+    int fromX = fromCellCol * this.bellCellSize;
+    int toX = Math.min(toCellCol * this.bellCellSize, this.width);
+    for (int x = fromX; x < toX; x++) {
+      Arrays.fill(bitmap[x], 0);
       int cellX = x / this.bellCellSize;
+      int xInBellCell = x - cellX * this.bellCellSize;
       for (int y = 0; y < this.height; y++) {
-        int cellY = y / this.bellCellSize;
-        BellRainPixelInfo currPixelInfo = this.pixelInfoArray[x][y];
-        BellRainCellInfo currCellInfo = this.cellInfoArray[cellX][cellY];
-
-        double currPixelValue = 0.0;
-        if (!currPixelInfo.isExposedByRain) continue;
+        int pixel = x * this.height + y;
+        if (!this.pixelsExposedByRain.get(pixel)) continue;
 
-        currPixelValue = currPixelInfo.bellCoefficient / 100.0;
+        int cellY = y / this.bellCellSize;
+        int cell = cellX * this.heightInCells + cellY;
+        double currPixelValue =
+            this.getBellCoefficient(pixel, xInBellCell, y - cellY * this.bellCellSize) / 100.0;
 
         // apply edge fade only for cells in first wave
-        if (currCellInfo.inFirstWave) {
+        if (this.cellsInFirstWave.get(cell)) {
           double edgeFadeCoef =
-              this.edgeFadeInterpolator.getValue(currCellInfo.iterationsAfterLastEdgeInFirstWave)
-                  / 100.0;
+              this.edgeFadeInterpolator.getValue(this.cellIterationsAfterLastEdge[cell]) / 100.0;
           // System.out.println("applying edge fade to: " + cellX + ",
           // " + cellY);
           // System.out.println("itrs: " +
-          // currCellInfo.iterationsAfterLastEdgeInFirstWave);
+          // this.cellIterationsAfterLastEdge[cell]);
           // apply edge fade influence
-          double edgeFadeInfluenceCoef =
-              this.edgeFadeInfluenceInterpolator.getValue(this.currIteration) / 100.0;
           // 1.0 -> edgeFadeCoef
           // 0.0 -> 1.0
           edgeFadeCoef = 1.0 + edgeFadeInfluenceCoef * (edgeFadeCoef - 1.0);
@@ -896,9 +864,9 @@ public final class BellRainManager {
       }
     }
 
-    for (int cellX = 0; cellX < this.widthInCells; cellX++) {
+    for (int cellX = fromCellCol; cellX < toCellCol; cellX++) {
       for (int cellY = 0; cellY < this.heightInCells; cellY++) {
-        BellRainCellInfo currCellInfo = this.cellInfoArray[cellX][cellY];
+        int cell = cellX * this.heightInCells + cellY;
         /*
          * if (currCellInfo.hasPixelOnEdge) { // go over all pixels of
          * this cell int startX = cellX*this.bellCellSize; int endX =
@@ -909,15 +877,13 @@ public final class BellRainManager {
          * y=startY; y<endY; y++) { bitmap[x][y] = 255; } } }
          */
         // apply color and luminosity factors only for second wave
-        if (currCellInfo.inFirstWave) continue;
+        if (this.cellsInFirstWave.get(cell)) continue;
 
         // apply color increase
-        double colorIncreaseFactor =
-            this.colorIncreaseInterpolator.getValue(this.currIteration) / 100.0;
         // 0.0 -> 0
         // 1.0 -> luminosity of pixel
         double colorIntensityFactor =
-            colorIncreaseFactor * currCellInfo.relativeAverageLuminosity / 255.0;
+            colorIncreaseFactor * this.cellRelativeLuminosities[cell] / 255.0;
 
         // go over all pixels of this cell
         int startX = cellX * this.bellCellSize;
@@ -935,29 +901,10 @@ public final class BellRainManager {
       }
     }
 
-    // overlay random drops
-    for (int cellX = 0; cellX < this.widthInCells; cellX++)
-      for (int cellY = 0; cellY < this.heightInCells; cellY++)
-        this.cellInfoArray[cellX][cellY].inRandomDrop = false;
-
-    for (int currDropIndex = 0; currDropIndex < this.randomDropArray.length; currDropIndex++) {
-      BellRainDropInfo currDrop = this.randomDropArray[currDropIndex];
-      int startRow = currDrop.dropRow;
-      int endRow = startRow - currDrop.length;
-      if (startRow >= this.heightInCells) startRow = this.heightInCells - 1;
-      if (endRow < 0) endRow = 0;
-      int currAge = currDrop.dropAge;
-      for (int currRow = startRow; currRow >= endRow; currRow--) {
-        this.cellInfoArray[currDrop.col][currRow].inRandomDrop = true;
-        this.cellInfoArray[currDrop.col][currRow].randomDropAge = currAge;
-        if (Math.random() < 0.5) currAge++;
-      }
-    }
-
-    for (int cellX = 0; cellX < this.widthInCells; cellX++) {
+    for (int cellX = fromCellCol; cellX < toCellCol; cellX++) {
       for (int cellY = 0; cellY < this.heightInCells; cellY++) {
-        BellRainCellInfo currCellInfo = this.cellInfoArray[cellX][cellY];
-        if (!currCellInfo.inRandomDrop) continue;
+        int cell = cellX * this.heightInCells + cellY;
+        if (!this.cellsInRandomDrop.get(cell)) continue;
 
         // go over all pixels of this cell
         int startX = cellX * this.bellCellSize;
@@ -968,10 +915,11 @@ public final class BellRainManager {
         if (endY >= this.height) endY = this.height - 1;
         for (int x = startX; x < endX; x++) {
           for (int y = startY; y < endY; y++) {
-            double bellValue = this.pixelInfoArray[x][y].bellCoefficient / 100.0;
+            double bellValue =
+                this.getBellCoefficient(x * this.height + y, x - startX, y - startY) / 100.0;
 
             double edgeFadeCoef =
-                this.edgeFadeInterpolator.getValue(currCellInfo.randomDropAge) / 100.0;
+                this.edgeFadeInterpolator.getValue(this.cellRandomDropAges[cell]) / 100.0;
 
             bellValue *= edgeFadeCoef;
             short newValue = (short) (255.0 * bellValue);
@@ -980,24 +928,19 @@ public final class BellRainManager {
         }
       }
     }
-
-    // advance random drops
-    for (int currDropIndex = 0; currDropIndex < this.randomDropArray.length; currDropIndex++) {
-      BellRainDropInfo currDrop = this.randomDropArray[currDropIndex];
-      if (Math.random() < 0.5) currDrop.dropAge++;
-      currDrop.dropRow += currDrop.speed;
-      // create new drop if this drop is too weak or is outside the screen
-      if ((currDrop.dropAge > 6)
-          || ((currDrop.dropRow - currDrop.length) >= this.heightInCells)
-          || (Math.random() < 0.05))
-        this.randomizeDrop(currDrop, this.heightInCells, this.widthInCells);
-    }
   }
 
   private void iterationStep2() {
-    this.currTrueColorBitmap.reset(0);
-    int[][] firstStepFinalMonochromeTrueColorBitmap = this.bitmapAfterFirstStep.getBitmap();
+    // every pixel is written, one band of cluster columns at a time
     int[][] bitmap = this.currTrueColorBitmap.getBitmap();
+    this.forEachColumnBand(
+        this.widthInClusters,
+        (fromClusterCol, toClusterCol) -> this.shadeStep2(bitmap, fromClusterCol, toClusterCol));
+  }
+
+  // shades the pixel columns of cluster columns fromClusterCol..toClusterCol-1
+  private void shadeStep2(int[][] bitmap, int fromClusterCol, int toClusterCol) {
+    int[][] firstStepFinalMonochromeTrueColorBitmap = this.bitmapAfterFirstStep.getBitmap();
 
     double monochromeToClusterAverageCoef =
         this.monochromeToClusterAverageInterpolator.getValue(this.currIteration) / 100.0;
@@ -1006,62 +949,72 @@ public final class BellRainManager {
     double monochromeFadeAroundEdgesCoef =
         this.monochromeFadeAroundEdgesInterpolator.getValue(this.currIteration) / 100.0;
     double clusterBorderCoef = this.clusterBorderInterpolator.getValue(this.currIteration) / 100.0;
-
-    for (int x = 0; x < this.width; x++) {
+    // the per-pixel interpolation runs in fixed point
+    int monochromeToClusterAverage = FixedPoint.fromDouble(monochromeToClusterAverageCoef);
+    int clusterAverageToFullColor = FixedPoint.fromDouble(clusterAverageToFullColorCoef);
+    int clusterBorder = FixedPoint.fromDouble(clusterBorderCoef);
+
+    int fromX = fromClusterCol * this.bellClusterSize;
+    int toX = Math.min(toClusterCol * this.bellClusterSize, this.width);
+    for (int x = fromX; x < toX; x++) {
       int clusterX = x / this.bellClusterSize;
       for (int y = 0; y < this.height; y++) {
         int clusterY = y / this.bellClusterSize;
-        BellRainPixelInfo currPixelInfo = this.pixelInfoArray[x][y];
-        BellRainClusterInfo currClusterInfo = this.clusterInfoArray[clusterX][clusterY];
+        int cluster = clusterX * this.heightInClusters + clusterY;
+        int averageColor = this.clusterAverageColors[cluster];
+        int averageR = (averageColor & 0x00FF0000) >> 16;
+        int averageG = (averageColor & 0x0000FF00) >> 8;
+        int averageB = averageColor & 0x000000FF;
 
         // apply 'monochrome'->'cluster average' and 'cluster
         // average'->'full color'
         // and adjust according to 'monochrome fade around edges'
         double monochromeFadeAroundEdgesInfluenceCoef =
-            this.monochromeFadeAroundEdgesInfluenceInterpolator.getValue(
-                    currClusterInfo.distanceToClosestTopEdge)
-                / 100.0;
+            this.clusterMonochromeFadeInfluences[cluster];
 
         int startR, startG, startB;
         int finalR, finalG, finalB;
-        double coef;
+        int coef;
 
         if (clusterAverageToFullColorCoef > 0.0) {
-          startR = currClusterInfo.averageR;
-          startG = currClusterInfo.averageG;
-          startB = currClusterInfo.averageB;
-          finalR = currPixelInfo.red;
-          finalG = currPixelInfo.green;
-          finalB = currPixelInfo.blue;
-          coef = clusterAverageToFullColorCoef;
+          int trueColor = this.pixelColors[x * this.height + y];
+          startR = averageR;
+          startG = averageG;
+          startB = averageB;
+          finalR = (trueColor & 0x00FF0000) >> 16;
+          finalG = (trueColor & 0x0000FF00) >> 8;
+          finalB = trueColor & 0x000000FF;
+          coef = clusterAverageToFullColor;
         } else {
           startR = (firstStepFinalMonochromeTrueColorBitmap[x][y] & 0x00FF0000) >> 16;
           startG = (firstStepFinalMonochromeTrueColorBitmap[x][y] & 0x0000FF00) >> 8;
           startB = (firstStepFinalMonochromeTrueColorBitmap[x][y] & 0x000000FF);
 
-          finalR = currClusterInfo.averageR;
-          finalG = currClusterInfo.averageG;
-          finalB = currClusterInfo.averageB;
+          finalR = averageR;
+          finalG = averageG;
+          finalB = averageB;
 
           // monochromeFadeAroundEdgesCoef*monochromeFadeAroundEdgesInfluenceCoef
           // 0.0 -> the color stays the same
-          // 1.0 -> currClusterInfo.averageLuminosity in monochrome
+          // 1.0 -> average luminosity of the cluster in monochrome
           // component
-          double monochromeFadeCoef =
-              monochromeFadeAroundEdgesCoef * monochromeFadeAroundEdgesInfluenceCoef;
-          int luminR = (int) (this.monochromeCoefR * currClusterInfo.averageLuminosity);
-          int luminG = (int) (this.monochromeCoefG * currClusterInfo.averageLuminosity);
-          int luminB = (int) (this.monochromeCoefB * currClusterInfo.averageLuminosity);
-          finalR = (int) (finalR + monochromeFadeCoef * (luminR - finalR));
-          finalG = (int) (finalG + monochromeFadeCoef * (luminG - finalG));
-          finalB = (int) (finalB + monochromeFadeCoef * (luminB - finalB));
-
-          coef = monochromeToClusterAverageCoef;
+          int monochromeFade =
+              FixedPoint.fromDouble(
+                  monochromeFadeAroundEdgesCoef * monochromeFadeAroundEdgesInfluenceCoef);
+          int averageLuminosity = this.clusterAverageLuminosities[cluster];
+          int luminR = (int) (this.monochromeCoefR * averageLuminosity);
+          int luminG = (int) (this.monochromeCoefG * averageLuminosity);
+          int luminB = (int) (this.monochromeCoefB * averageLuminosity);
+          finalR = FixedPoint.lerp(finalR, luminR, monochromeFade);
+          finalG = FixedPoint.lerp(finalG, luminG, monochromeFade);
+          finalB = FixedPoint.lerp(finalB, luminB, monochromeFade);
+
+          coef = monochromeToClusterAverage;
         }
 
-        int newR = (int) (startR + coef * (finalR - startR));
-        int newG = (int) (startG + coef * (finalG - startG));
-        int newB = (int) (startB + coef * (finalB - startB));
+        int newR = FixedPoint.lerp(startR, finalR, coef);
+        int newG = FixedPoint.lerp(startG, finalG, coef);
+        int newB = FixedPoint.lerp(startB, finalB, coef);
 
         // apply border (for left and top borders)
         boolean isOnClusterBorderTL =
@@ -1069,12 +1022,13 @@ public final class BellRainManager {
         boolean isOnClusterBorderBR =
             (((x - 1) % this.bellClusterSize) == 0) || (((y - 1) % this.bellClusterSize) == 0);
         if (isOnClusterBorderTL && !isOnClusterBorderBR) {
-          int borderR = currClusterInfo.borderR;
-          int borderG = currClusterInfo.borderG;
-          int borderB = currClusterInfo.borderB;
-          newR = (int) (newR + clusterBorderCoef * (borderR - newR));
-          newG = (int) (newG + clusterBorderCoef * (borderG - newG));
-          newB = (int) (newB + clusterBorderCoef * (borderB - newB));
+          // border - twice darker
+          int borderR = averageR / 2;
+          int borderG = averageG / 2;
+          int borderB = averageB / 2;
+          newR = FixedPoint.lerp(newR, borderR, clusterBorder);
+          newG = FixedPoint.lerp(newG, borderG, clusterBorder);
+          newB = FixedPoint.lerp(newB, borderB, clusterBorder);
         }
 
         if (newR > 255) newR = 255;
@@ -1146,16 +1100,18 @@ public final class BellRainManager {
       int clusterX = x / this.bellClusterSize;
       for (int y = 0; y < this.height; y++) {
         int clusterY = y / this.bellClusterSize;
-        BellRainPixelInfo currPixelInfo = this.pixelInfoArray[x][y];
-        BellRainClusterInfo currClusterInfo = this.clusterInfoArray[clusterX][clusterY];
+        int cluster = clusterX * this.heightInClusters + clusterY;
+        int pixel = x * this.height + y;
+        int trueColor = this.pixelColors[pixel];
+        int averageLuminosity = this.clusterAverageLuminosities[cluster];
 
         // apply 'full color'->'monochrome average'
-        int startR = currPixelInfo.red;
-        int startG = currPixelInfo.green;
-        int startB = currPixelInfo.blue;
-        int finalR = (int) (this.monochromeCoefR * currClusterInfo.averageLuminosity);
-        int finalG = (int) (this.monochromeCoefG * currClusterInfo.averageLuminosity);
-        int finalB = (int) (this.monochromeCoefB * currClusterInfo.averageLuminosity);
+        int startR = (trueColor & 0x00FF0000) >> 16;
+        int startG = (trueColor & 0x0000FF00) >> 8;
+        int startB = trueColor & 0x000000FF;
+        int finalR = (int) (this.monochromeCoefR * averageLuminosity);
+        int finalG = (int) (this.monochromeCoefG * averageLuminosity);
+        int finalB = (int) (this.monochromeCoefB * averageLuminosity);
 
         int newR = (int) (startR + fullColorToClusterMonochromeAverageCoef * (finalR - startR));
         int newG = (int) (startG + fullColorToClusterMonochromeAverageCoef * (finalG - startG));
@@ -1164,7 +1120,7 @@ public final class BellRainManager {
         // apply 'edge survival'
         double edgeSurvivalCoef =
             this.edgeSurvivalInterpolator.getValue(
-                    currClusterInfo.distanceToClosestTopEdge * currIteration)
+                    this.clusterDistancesToClosestTopEdge[cluster] * currIteration)
                 / 100.0;
         // 1.0 -> color stays
         // 0.0 -> black
@@ -1177,7 +1133,8 @@ public final class BellRainManager {
         // 1.0 -> color stays
         // 0.5 -> bell coefficient
         // 0.0 -> black
-        double bellCoef = currPixelInfo.bellCoefficient / 100.0;
+        double bellCoef =
+            this.getBellCoefficient(pixel, x % this.bellCellSize, y % this.bellCellSize) / 100.0;
         double coef;
         if (disintegrationCoef >= 0.5)
           coef = bellCoef + (disintegrationCoef - 0.5) * (1.0 - bellCoef) / 0.5;
@@ -1266,4 +1223,16 @@ public final class BellRainManager {
   public boolean toGetIndexBitmap() {
     return (this.state == BellRainManager.STATE_BELLRAIN_FIRSTPHASE);
   }
+
+  /**
+   * Whether the pixels are shaded on the common fork-join pool, one band of columns per task. Both
+   * modes produce the same frames.
+   */
+  public void setParallelIteration(boolean parallelIteration) {
+    this.parallelIteration = parallelIteration;
+  }
+
+  public boolean isParallelIteration() {
+    return this.parallelIteration;
+  }
 }
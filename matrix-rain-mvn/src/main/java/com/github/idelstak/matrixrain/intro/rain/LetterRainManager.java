@@ -23,14 +23,17 @@
 package com.github.idelstak.matrixrain.intro.rain;
 
 import java.awt.*;
-import java.awt.image.PixelGrabber;
+import java.util.BitSet;
 
 import com.github.idelstak.matrixrain.auxiliary.graphics.IndexBitmapObject;
+import com.github.idelstak.matrixrain.auxiliary.graphics.SourceImageAnalysis;
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
 import com.github.idelstak.matrixrain.auxiliary.graphics.spline.SplineInterpolatorObject;
 import com.github.idelstak.matrixrain.auxiliary.graphics.spline.SplineManager;
+import com.github.idelstak.matrixrain.auxiliary.math.FixedPoint;
 import com.github.idelstak.matrixrain.auxiliary.math.GaussValues;
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.font.GlyphFactory;
 import com.github.idelstak.matrixrain.font.MemoryGlyph;
 
@@ -61,9 +64,26 @@ public final class LetterRainManager {
 
   private int widthInLetters, heightInLetters;
 
-  private LetterRainPixelInfo[][] pixelInfoArray;
+  // pixel state, one column after the other: pixel (x, y) is at x * height + y
+  private int[] pixelColors;
 
-  private LetterRainCellInfo[][] cellInfoArray;
+  private byte[] pixelLuminosities;
+
+  // relative luminosity of the picture by pixel luminosity
+  private double[] relativeLuminosities;
+
+  // cell state, one column after the other: cell (col, row) is at col * heightInLetters + row
+  private BitSet cellsExposedByRain;
+
+  private int[] cellGlyphIndices;
+
+  private int[] cellGlyphBlurs;
+
+  private int[] cellGlyphRadiances;
+
+  private double[] cellGlyphFades;
+
+  private double[] cellGlyphFadeCoefs;
 
   private LetterRainColumnInfo[] columnInfoArray;
 
@@ -83,6 +103,9 @@ public final class LetterRainManager {
 
   private int totalGlyphCount;
 
+  // all randomness of this effect, so that a seeded run replays the same rain
+  private final RandomSource random;
+
   private int currIteration;
 
   private int maxIterationFirstPhase;
@@ -103,22 +126,6 @@ public final class LetterRainManager {
 
   private SplineInterpolatorObject blackBackgroundToFullColorBackgroundFadeInterpolator;
 
-  private final class LetterRainPixelInfo {
-    public int red;
-
-    public int green;
-
-    public int blue;
-
-    public int trueColor;
-
-    public double luminosity;
-
-    public double relativeLuminosity;
-
-    public boolean isExposedByRain;
-  }
-
   private final class LetterRainWaveInfo {
     public int age;
 
@@ -200,25 +207,6 @@ public final class LetterRainManager {
     }
   }
 
-  private final class LetterRainCellInfo {
-    public double averageLuminosity;
-
-    public double relativeAverageLuminosity;
-
-    public boolean isExposedByRain;
-
-    public int glyphIndex;
-
-    public int glyphBlur;
-
-    public int glyphRadiance;
-
-    public double glyphFade;
-
-    public double glyphFadeCoef;
-    // public MemoryGlyph currGlyph;
-  }
-
   private final class LetterRainColumnInfo {
     public LetterRainWaveInfoList waves;
   }
@@ -240,7 +228,26 @@ public final class LetterRainManager {
       int letterSize,
       ColorManager colorManager,
       GlyphFactory glyphFactory) {
+    this(
+        width,
+        height,
+        new SourceImageAnalysis(finalImage, width, height),
+        letterSize,
+        colorManager,
+        glyphFactory,
+        RandomSource.current().split());
+  }
+
+  public LetterRainManager(
+      int width,
+      int height,
+      SourceImageAnalysis finalImageAnalysis,
+      int letterSize,
+      ColorManager colorManager,
+      GlyphFactory glyphFactory,
+      RandomSource random) {
 
+    this.random = random;
     this.width = width;
     this.height = height;
     this.letterSize = letterSize;
@@ -252,89 +259,34 @@ public final class LetterRainManager {
     this.widthInLetters = (int) (Math.ceil((double) width / (double) letterSize));
     this.heightInLetters = 1 + (int) (Math.ceil((double) height / (double) letterSize));
 
-    // get original pixels
-    int[] origPixels = new int[height * width];
-    PixelGrabber pg = new PixelGrabber(finalImage, 0, 0, width, height, origPixels, 0, width);
-    try {
-      pg.grabPixels();
-    } catch (InterruptedException e) {
-      System.err.println("Everything not cool");
-      return;
-    }
-    if ((pg.getStatus() & java.awt.image.ImageObserver.ABORT) != 0) {
-      System.err.println("Everything not cool");
-      return;
-    }
+    // pixel state is shared with the analysis
+    this.pixelColors = finalImageAnalysis.getPixels();
+    this.pixelLuminosities = finalImageAnalysis.getLuminosities();
 
     this.screenInfo = new LetterRainScreenInfo();
-    int[] luminosities = new int[256];
-    for (int i = 0; i < luminosities.length; i++) luminosities[i] = 0;
-
-    // create info structures on all pixels
-    int pixelCount = 0;
-    double pixelSum = 0.0;
-    double maxPixelLum = 0.0;
-    this.pixelInfoArray = new LetterRainPixelInfo[width][height];
-    for (int col = 0; col < this.width; col++) {
-      for (int row = 0; row < this.height; row++) {
-        int index = row * this.width + col;
-        LetterRainPixelInfo currPixelInfo = new LetterRainPixelInfo();
-        currPixelInfo.trueColor = origPixels[index];
-        int red = currPixelInfo.trueColor & 0x00FF0000;
-        red >>= 16;
-        currPixelInfo.red = red;
-        int green = currPixelInfo.trueColor & 0x0000FF00;
-        green >>= 8;
-        currPixelInfo.green = green;
-        int blue = currPixelInfo.trueColor & 0x000000FF;
-        currPixelInfo.blue = blue;
-
-        currPixelInfo.luminosity = (222 * red + 707 * green + 71 * blue) / 1000;
-        luminosities[(int) currPixelInfo.luminosity]++;
-        pixelSum += currPixelInfo.luminosity;
-        if (currPixelInfo.luminosity > maxPixelLum) maxPixelLum = currPixelInfo.luminosity;
-        pixelCount++;
-
-        currPixelInfo.isExposedByRain = false;
-
-        this.pixelInfoArray[col][row] = currPixelInfo;
-      }
-    }
-    this.screenInfo.averagePixelLuminosity = pixelSum / pixelCount;
-    this.screenInfo.maxPixelLuminosity = maxPixelLum;
-
-    int cutoffLuminosity = 255;
-    int cutoffThreshold = (int) (this.width * this.height * LetterRainManager.CUTOFF_THRESHOLD);
-    int cutoffSum = 0;
-    for (int i = 0; i < luminosities.length; i++) {
-      cutoffSum += luminosities[i];
-      if (cutoffSum > cutoffThreshold) {
-        cutoffLuminosity = i;
-        break;
-      }
-    }
-    // System.out.println("max lum: " + maxPixelLum);
-    // System.out.println("avg lum: " +
-    // this.screenInfo.averagePixelLuminosity);
-    // System.out.println("cut lum: " + cutoffLuminosity);
-    for (int col = 0; col < this.width; col++) {
-      for (int row = 0; row < this.height; row++) {
-        double currLum = this.pixelInfoArray[col][row].luminosity;
-        if (currLum > cutoffLuminosity) this.pixelInfoArray[col][row].relativeLuminosity = 255.0;
-        else
-          this.pixelInfoArray[col][row].relativeLuminosity =
-              255.0 * this.pixelInfoArray[col][row].luminosity / cutoffLuminosity;
-      }
+    this.screenInfo.averagePixelLuminosity = finalImageAnalysis.getAverageLuminosity();
+    this.screenInfo.maxPixelLuminosity = finalImageAnalysis.getMaxLuminosity();
+
+    int cutoffLuminosity =
+        finalImageAnalysis.getCutoffLuminosity(LetterRainManager.CUTOFF_THRESHOLD);
+    this.relativeLuminosities = new double[256];
+    for (int currLum = 0; currLum < this.relativeLuminosities.length; currLum++) {
+      if (currLum > cutoffLuminosity) this.relativeLuminosities[currLum] = 255.0;
+      else this.relativeLuminosities[currLum] = 255.0 * currLum / cutoffLuminosity;
     }
 
-    this.screenInfo.averagePixelLuminosity = pixelSum / pixelCount;
-
-    // create info structures on all cells
-    this.cellInfoArray = new LetterRainCellInfo[this.widthInLetters][this.heightInLetters];
+    // create state of all cells
+    int cellCount = this.widthInLetters * this.heightInLetters;
+    this.cellsExposedByRain = new BitSet(cellCount);
+    this.cellGlyphIndices = new int[cellCount];
+    this.cellGlyphBlurs = new int[cellCount];
+    this.cellGlyphRadiances = new int[cellCount];
+    this.cellGlyphFades = new double[cellCount];
+    this.cellGlyphFadeCoefs = new double[cellCount];
+    double cellSum = 0.0;
+    double maxCellLum = 0.0;
     for (int cellCol = 0; cellCol < this.widthInLetters; cellCol++) {
       for (int cellRow = 0; cellRow < this.heightInLetters; cellRow++) {
-        LetterRainCellInfo currCellInfo = new LetterRainCellInfo();
-
         // go over all pixels of this cell
         int startX = cellCol * this.letterSize;
         int endX = (cellCol + 1) * this.letterSize;
@@ -346,29 +298,18 @@ public final class LetterRainManager {
         double luminositySum = 0.0;
         for (int x = startX; x < endX; x++) {
           for (int y = startY; y < endY; y++) {
-            luminositySum += this.pixelInfoArray[x][y].luminosity;
+            luminositySum += this.pixelLuminosities[x * this.height + y] & 0xFF;
             count++;
           }
         }
 
         double avgLuminosity = (count > 0) ? (luminositySum / count) : 0;
-        currCellInfo.averageLuminosity = avgLuminosity;
-
-        currCellInfo.isExposedByRain = false;
-
-        this.cellInfoArray[cellCol][cellRow] = currCellInfo;
+        cellSum += avgLuminosity;
+        if (avgLuminosity > maxCellLum) maxCellLum = avgLuminosity;
       }
     }
-
-    // for (int clusterRow=0; clusterRow < this.heightInClusters;
-    // clusterRow++) {
-    // for (int clusterCol=0; clusterCol < this.widthInClusters;
-    // clusterCol++) {
-    // System.out.print(this.clusterInfoArray[clusterCol][clusterRow].distanceToClosestTopEdge
-    // + ",");
-    // }
-    // System.out.println();
-    // }
+    this.screenInfo.averageCellLuminosity = cellSum / cellCount;
+    this.screenInfo.maxCellLuminosity = maxCellLum;
 
     int[][] bitmapPixels = new int[this.width][this.height];
     for (int i = 0; i < this.width; i++)
@@ -384,8 +325,8 @@ public final class LetterRainManager {
       for (int i = 1; i < N; i++) {
         double k = 2 * Math.PI / (N * this.widthInLetters);
         currYs +=
-            ((double) (N + Math.random()) / (double) i)
-                * Math.sin(k * i * x + 2 * Math.PI * Math.random());
+            ((double) (N + this.random.nextDouble()) / (double) i)
+                * Math.sin(k * i * x + 2 * Math.PI * this.random.nextDouble());
       }
       this.rain_ys[x] = (int) currYs;
     }
@@ -406,7 +347,7 @@ public final class LetterRainManager {
     for (int x = 0; x < this.widthInLetters; x++) {
       for (int t = 0; t < this.maxIterationFirstPhase; t++) {
         double currDelta = 0.0;
-        double phase = 2.0 * Math.PI * Math.random();
+        double phase = 2.0 * Math.PI * this.random.nextDouble();
         for (int i = 1; i < M; i++) currDelta += Math.sin(i * x * (t + 1) + phase);
         if (currDelta < 0.0) currDelta = -currDelta;
         currDelta += 1.0;
@@ -460,14 +401,16 @@ public final class LetterRainManager {
         if (currWaveIndex == 0) {
           newWaveInfo.timeUntilStart = -this.rain_ys[currCol];
         } else {
-          int interval = averageIntervalBetweenWaves + GaussValues.getRandomGaussian(5);
+          int interval =
+              averageIntervalBetweenWaves + GaussValues.getRandomGaussian(5, this.random);
           newWaveInfo.timeUntilStart = prevStart + interval;
         }
         prevStart = newWaveInfo.timeUntilStart;
 
         newWaveInfo.deltas = new int[this.heightInLetters];
         for (int currTime = 0; currTime < this.heightInLetters; currTime++)
-          newWaveInfo.deltas[currTime] = 1 + GaussValues.getRandomGaussian(currWaveIndex + 2);
+          newWaveInfo.deltas[currTime] =
+              1 + GaussValues.getRandomGaussian(currWaveIndex + 2, this.random);
 
         newWaveInfo.state = LetterRainManager.STATE_WAVE_WAITING;
 
@@ -490,28 +433,6 @@ public final class LetterRainManager {
      * System.out.println(); currWaveElement = currWaveElement.next; } }
      */
 
-    int cellCount = 0;
-    double cellSum = 0.0;
-    double maxCellLum = 0.0;
-    for (int currCol = 0; currCol < this.widthInLetters; currCol++) {
-      for (int currRow = 0; currRow < this.heightInLetters; currRow++) {
-        double currLum = this.cellInfoArray[currCol][currRow].averageLuminosity;
-        cellSum += currLum;
-        if (currLum > maxCellLum) maxCellLum = currLum;
-        cellCount++;
-      }
-    }
-    this.screenInfo.averageCellLuminosity = cellSum / cellCount;
-    this.screenInfo.maxCellLuminosity = maxCellLum;
-    for (int currCol = 0; currCol < this.widthInLetters; currCol++) {
-      for (int currRow = 0; currRow < this.heightInLetters; currRow++) {
-        this.cellInfoArray[currCol][currRow].relativeAverageLuminosity =
-            255.0
-                * this.cellInfoArray[currCol][currRow].averageLuminosity
-                / this.screenInfo.maxCellLuminosity;
-      }
-    }
-
     // interpolators
     Point[] monochromeLetterToFullColorLetterFadePoints = new Point[4];
     monochromeLetterToFullColorLetterFadePoints[0] = new Point(0, 0);
@@ -543,6 +464,7 @@ public final class LetterRainManager {
   private void advanceWaves() {
     // go over all letters and advance down waves if necessary
     for (int cellCol = 0; cellCol < this.widthInLetters; cellCol++) {
+      int columnStart = cellCol * this.heightInLetters;
       LetterRainColumnInfo currColumnInfo = this.columnInfoArray[cellCol];
       LetterRainWaveInfoList waveList = currColumnInfo.waves;
       LetterRainWaveInfoElement currWaveElement = waveList.head;
@@ -572,21 +494,20 @@ public final class LetterRainManager {
                   : currWaveInfo.currHeadRow;
           // update radiance of trailing glyphs
           for (int currRow = 0; currRow < oldVisibleHeadRow; currRow++) {
-            LetterRainCellInfo currCellInfo = cellInfoArray[cellCol][currRow];
-            currCellInfo.glyphRadiance--;
-            if (currCellInfo.glyphRadiance < 0) currCellInfo.glyphRadiance = 0;
+            int cell = columnStart + currRow;
+            if (this.cellGlyphRadiances[cell] > 0) this.cellGlyphRadiances[cell]--;
           }
           int newVisibleHeadRow =
               (newHeadRow >= this.heightInLetters) ? (this.heightInLetters - 1) : newHeadRow;
           for (int currRow = oldVisibleHeadRow; currRow <= newVisibleHeadRow; currRow++) {
-            LetterRainCellInfo currCellInfo = cellInfoArray[cellCol][currRow];
-            currCellInfo.glyphIndex = (int) (Math.random() * this.totalGlyphCount);
-            currCellInfo.glyphBlur = 1;
-            currCellInfo.glyphRadiance = (currRow == newHeadRow) ? 2 : 1;
-            currCellInfo.glyphFade = 1.0;
-            currCellInfo.glyphFadeCoef =
+            int cell = columnStart + currRow;
+            this.cellGlyphIndices[cell] = (int) (this.random.nextDouble() * this.totalGlyphCount);
+            this.cellGlyphBlurs[cell] = 1;
+            this.cellGlyphRadiances[cell] = (currRow == newHeadRow) ? 2 : 1;
+            this.cellGlyphFades[cell] = 1.0;
+            this.cellGlyphFadeCoefs[cell] =
                 1.0 - (0.07 - 0.07 * currWaveInfo.age / LetterRainManager.WAVE_COUNT);
-            currCellInfo.isExposedByRain = true;
+            this.cellsExposedByRain.set(cell);
           }
           currWaveInfo.currHeadRow = newHeadRow;
         }
@@ -595,9 +516,9 @@ public final class LetterRainManager {
       }
 
       // after all waves have been processed - update fade factor
-      for (int currRow = 0; currRow < this.heightInLetters; currRow++) {
-        LetterRainCellInfo currCellInfo = cellInfoArray[cellCol][currRow];
-        if (currCellInfo.glyphRadiance == 0) currCellInfo.glyphFade *= currCellInfo.glyphFadeCoef;
+      for (int cell = columnStart; cell < columnStart + this.heightInLetters; cell++) {
+        if (this.cellGlyphRadiances[cell] == 0)
+          this.cellGlyphFades[cell] *= this.cellGlyphFadeCoefs[cell];
       }
     }
   }
@@ -615,12 +536,15 @@ public final class LetterRainManager {
     // go over all letters and draw them
     for (int cellCol = 0; cellCol < this.widthInLetters; cellCol++) {
       for (int cellRow = 0; cellRow < this.heightInLetters; cellRow++) {
-        LetterRainCellInfo currCellInfo = this.cellInfoArray[cellCol][cellRow];
-        if (!currCellInfo.isExposedByRain) continue;
+        int cell = cellCol * this.heightInLetters + cellRow;
+        if (!this.cellsExposedByRain.get(cell)) continue;
         MemoryGlyph glyph =
             this.glyphFactory.getGlyph(
-                currCellInfo.glyphIndex, 1, currCellInfo.glyphBlur, currCellInfo.glyphRadiance);
-        double fadeCoef = currCellInfo.glyphFade;
+                this.cellGlyphIndices[cell],
+                1,
+                this.cellGlyphBlurs[cell],
+                this.cellGlyphRadiances[cell]);
+        double fadeCoef = this.cellGlyphFades[cell];
 
         int xL = glyph.getLeft(), xR = glyph.getRight();
         int yT = glyph.getTop(), yB = glyph.getBottom();
@@ -638,13 +562,13 @@ public final class LetterRainManager {
             // fade from full rain to rain on pixels
             // 0.0 -> rainPixelValue
             // 1.0 -> rainPixelValue*picture pixel value/255.0
-            LetterRainPixelInfo currPixelInfo = this.pixelInfoArray[bx][by];
+            double relativeLuminosity =
+                this.relativeLuminosities[this.pixelLuminosities[bx * this.height + by] & 0xFF];
 
             int newValue =
                 rainPixelValue
                     + (int)
-                        (fullLetterToMonochromeLetterCoef
-                            * (currPixelInfo.relativeLuminosity - rainPixelValue));
+                        (fullLetterToMonochromeLetterCoef * (relativeLuminosity - rainPixelValue));
 
             if (newValue > rainPixelValue) newValue = rainPixelValue;
 
@@ -670,14 +594,22 @@ public final class LetterRainManager {
             / 100.0;
     if (blackBackgroundToFullColorBackgroundCoef < 0.0)
       blackBackgroundToFullColorBackgroundCoef = 0.0;
+    // the per-pixel interpolation runs in fixed point
+    int monochromeLetterToFullColorLetter =
+        FixedPoint.fromDouble(monochromeLetterToFullColorLetterCoef);
+    int blackBackgroundToFullColorBackground =
+        FixedPoint.fromDouble(blackBackgroundToFullColorBackgroundCoef);
 
     for (int cellCol = 0; cellCol < this.widthInLetters; cellCol++) {
       for (int cellRow = 0; cellRow < this.heightInLetters; cellRow++) {
-        LetterRainCellInfo currCellInfo = this.cellInfoArray[cellCol][cellRow];
+        int cell = cellCol * this.heightInLetters + cellRow;
         MemoryGlyph glyph =
             this.glyphFactory.getGlyph(
-                currCellInfo.glyphIndex, 1, currCellInfo.glyphBlur, currCellInfo.glyphRadiance);
-        double fadeCoef = currCellInfo.glyphFade;
+                this.cellGlyphIndices[cell],
+                1,
+                this.cellGlyphBlurs[cell],
+                this.cellGlyphRadiances[cell]);
+        double fadeCoef = this.cellGlyphFades[cell];
 
         int gS = glyph.getSize();
         int x = cellCol * this.letterSize;
@@ -692,9 +624,9 @@ public final class LetterRainManager {
             int by = y + j;
             if ((by < 0) || (by >= this.height)) continue;
 
-            LetterRainPixelInfo currPixelInfo = this.pixelInfoArray[bx][by];
+            int pixel = bx * this.height + by;
             int startR, startG, startB;
-            double coef;
+            int coef;
 
             if (glyphPixelValue > 0) {
               // pixel on glyph
@@ -702,7 +634,8 @@ public final class LetterRainManager {
               // fade from monochrome to full-color rain on pixels
               // 0.0 -> monochrome components
               // 1.0 -> full-color components
-              int rainIndexValue = (int) currPixelInfo.relativeLuminosity;
+              int rainIndexValue =
+                  (int) this.relativeLuminosities[this.pixelLuminosities[pixel] & 0xFF];
               if (rainIndexValue > rainPixelValue) rainIndexValue = rainPixelValue;
 
               Color rainColor = this.colorManager.getColor(rainIndexValue);
@@ -710,23 +643,24 @@ public final class LetterRainManager {
               startG = rainColor.getGreen();
               startB = rainColor.getBlue();
 
-              coef = monochromeLetterToFullColorLetterCoef;
+              coef = monochromeLetterToFullColorLetter;
             } else {
               // pixel on background
               startR = 0;
               startG = 0;
               startB = 0;
 
-              coef = blackBackgroundToFullColorBackgroundCoef;
+              coef = blackBackgroundToFullColorBackground;
             }
 
-            int finalR = currPixelInfo.red;
-            int finalG = currPixelInfo.green;
-            int finalB = currPixelInfo.blue;
+            int trueColor = this.pixelColors[pixel];
+            int finalR = (trueColor & 0x00FF0000) >> 16;
+            int finalG = (trueColor & 0x0000FF00) >> 8;
+            int finalB = trueColor & 0x000000FF;
 
-            int newR = (int) (startR + coef * (finalR - startR));
-            int newG = (int) (startG + coef * (finalG - startG));
-            int newB = (int) (startB + coef * (finalB - startB));
+            int newR = FixedPoint.lerp(startR, finalR, coef);
+            int newG = FixedPoint.lerp(startG, finalG, coef);
+            int newB = FixedPoint.lerp(startB, finalB, coef);
 
             // int newR = finalR;
             // int newG = finalG;
@@ -747,7 +681,7 @@ public final class LetterRainManager {
             if (newB < 0) newB = 0;
 
             int newColor = (255 << 24) | (newR << 16) | (newG << 8) | newB;
-            // newColor = currPixelInfo.trueColor;
+            // newColor = trueColor;
             bitmap[bx][by] = newColor;
           }
         }
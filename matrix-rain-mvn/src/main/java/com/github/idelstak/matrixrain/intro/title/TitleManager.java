@@ -24,6 +24,7 @@ package com.github.idelstak.matrixrain.intro.title;
 
 import java.util.StringTokenizer;
 
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.connector.ConnectorManager;
 import com.github.idelstak.matrixrain.connector.ConnectorObject;
 import com.github.idelstak.matrixrain.font.GlyphFactory;
@@ -51,8 +52,7 @@ public class TitleManager {
   }
 
   private int getRandom(int maxValue) {
-    double val = Math.random();
-    return (int) (Math.floor(val * maxValue));
+    return RandomSource.current().nextInt(maxValue);
   }
 
   public synchronized void showTitle(
@@ -127,6 +127,13 @@ public class TitleZoomManager {
     public synchronized boolean isCursorAfterLastFrame() {
       return (this.curr == null);
     }
+
+    public synchronized long getBitmapBytes() {
+      long result = 0;
+      for (TitleFrameElement element = this.head; element != null; element = element.next)
+        result += 4L * element.titleBitmap.getWidth() * element.titleBitmap.getHeight();
+      return result;
+    }
   }
 
   private int windowWidth;
@@ -286,4 +293,9 @@ public class TitleZoomManager {
   public synchronized boolean isCurrentAfterLastFrame() {
     return this.titleFrameList.isCursorAfterLastFrame();
   }
+
+  /** @return bytes held by the precomputed zoom frames */
+  public long getFrameBytes() {
+    return this.titleFrameList.getBitmapBytes();
+  }
 }
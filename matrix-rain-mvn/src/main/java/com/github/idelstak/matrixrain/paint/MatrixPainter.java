@@ -26,10 +26,15 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 
 import com.github.idelstak.matrixrain.MatrixPanel;
+import com.github.idelstak.matrixrain.auxiliary.graphics.PixelKernels;
 import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapObject;
-import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorImageManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.TrueColorBitmapManager;
 import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
 import com.github.idelstak.matrixrain.font.GlyphFactory;
+import com.github.idelstak.matrixrain.render.FrameExchange;
+import com.github.idelstak.matrixrain.render.FramePresenter;
+import com.github.idelstak.matrixrain.render.FramePresenters;
+import com.github.idelstak.matrixrain.render.FrameStats;
 
 public final class MatrixPainter {
   public static final int CONTROL_NONE = -1;
@@ -44,6 +49,9 @@ public final class MatrixPainter {
 
   public static final int CONTROL_NPR = 24;
 
+  /** Weight of the newer frame that shows it alone, see paintIntro. */
+  public static final int CROSS_FADE_STEPS = PixelKernels.LERP_ONE;
+
   public MatrixPanel panel;
 
   public int appWidth, appHeight;
@@ -59,7 +67,24 @@ public final class MatrixPainter {
 
   // public NPRManager nprManager;
 
-  private final TrueColorImageManager trueColorImageManager;
+  // paints into the back buffer of the frame exchange, on the animation thread
+  private final TrueColorBitmapManager trueColorBitmapManager;
+
+  private final FrameExchange frameExchange;
+
+  // turns the exchange buffers into images, used on the event dispatch thread only
+  private final FramePresenter framePresenter;
+
+  private int shownFrame = -1;
+
+  // the text of the performance overlay is only rebuilt this often, frames in between reuse it
+  private static final long HUD_REFRESH_NANOS = 500_000_000L;
+
+  private final String[] hudLines = new String[FrameStats.STAGE_COUNT + 1];
+
+  private int hudWidth;
+
+  private long hudRefreshTime;
 
   public Image debugImage;
 
@@ -71,7 +96,13 @@ public final class MatrixPainter {
 
     this.introColorManager = introColorManager;
 
-    this.trueColorImageManager = new TrueColorImageManager(panel);
+    this.trueColorBitmapManager = new TrueColorBitmapManager(this.appWidth, this.appHeight);
+    this.framePresenter = FramePresenters.createPresenter(panel, this.appWidth, this.appHeight, 3);
+    this.frameExchange =
+        new FrameExchange(
+            this.framePresenter.getPixels(0),
+            this.framePresenter.getPixels(1),
+            this.framePresenter.getPixels(2));
   }
 
   private GlyphFactory createSingleGlyphFactory(int weight, int kind) {
@@ -138,10 +169,10 @@ public final class MatrixPainter {
   }
 
   public void paintMessage(String message) {
-    this.trueColorImageManager.resetImage();
+    this.trueColorBitmapManager.resetImage();
     GlyphFactory glyphFactory = this.messageGlyphFactory;
     int messWidth = this.stringWidth(glyphFactory, message);
-    this.trueColorImageManager.paintString(
+    this.trueColorBitmapManager.paintString(
         glyphFactory,
         message,
         (this.appWidth - messWidth) / 2,
@@ -152,8 +183,26 @@ public final class MatrixPainter {
   }
 
   public void paintIntro(int[] introFrameBitmap, String optionalMessage) {
-    this.trueColorImageManager.overwriteBitmap1D(introFrameBitmap);
+    this.trueColorBitmapManager.overwriteBitmap1D(introFrameBitmap);
+    this.paintIntroMessage(optionalMessage);
+  }
+
+  /**
+   * Paints the intro between two of its frames: weight 0 shows the older one, {@link
+   * #CROSS_FADE_STEPS} the newer one and the weights in between interpolate linearly.
+   */
+  public void paintIntro(
+      int[] olderFrameBitmap, int[] newerFrameBitmap, int newerWeight, String optionalMessage) {
+    this.trueColorBitmapManager.lerpBitmap1D(olderFrameBitmap, newerFrameBitmap, newerWeight);
+    this.paintIntroMessage(optionalMessage);
+  }
+
+  /** @return the cross-fade weight of the newer frame for alpha in 0.0..1.0 */
+  public static int toCrossFadeWeight(double alpha) {
+    return (int) Math.round(Math.max(0.0, Math.min(1.0, alpha)) * CROSS_FADE_STEPS);
+  }
 
+  private void paintIntroMessage(String optionalMessage) {
     if (optionalMessage == null) return;
 
     if (optionalMessage.length() == 0) return;
@@ -164,33 +213,94 @@ public final class MatrixPainter {
 
     int x = (this.appWidth - messWidth) / 2;
     int y = (this.appHeight - messHeight) / 2;
-    this.trueColorImageManager.fillRect(
+    this.trueColorBitmapManager.fillRect(
         x, y - messHeight, messWidth + 4, messHeight, Color.black.getRGB());
-    this.trueColorImageManager.drawRect(
+    this.trueColorBitmapManager.drawRect(
         x,
         y - messHeight,
         messWidth + 4,
         messHeight,
         this.introColorManager.getMasterColor().getRGB());
 
-    this.trueColorImageManager.paintHollowRawLine(
+    this.trueColorBitmapManager.paintHollowRawLine(
         glyphFactory, optionalMessage, x + 2, y - 9, this.introColorManager, false);
   }
 
+  /**
+   * Paints frame rate, frame budget and the p50 / p95 / p99 times of every stage in the top left
+   * corner, on top of what has been painted so far.
+   */
+  public void paintHud(FrameStats frameStats, long frameBudgetNanos) {
+    GlyphFactory glyphFactory =
+        (this.glyphFactoryArray != null) ? this.glyphFactoryArray[10][0] : this.messageGlyphFactory;
+
+    long now = System.nanoTime();
+    if ((this.hudLines[0] == null) || (now - this.hudRefreshTime >= HUD_REFRESH_NANOS)) {
+      this.hudRefreshTime = now;
+      this.hudLines[0] =
+          "fps "
+              + Math.round(frameStats.getFramesPerSecond())
+              + ", budget "
+              + formatMillis(frameBudgetNanos)
+              + " ms, p50/p95/p99";
+      for (int stage = 0; stage < FrameStats.STAGE_COUNT; stage++) {
+        this.hudLines[stage + 1] =
+            FrameStats.getStageName(stage)
+                + " "
+                + formatMillis(frameStats.getPercentile(stage, 50))
+                + " / "
+                + formatMillis(frameStats.getPercentile(stage, 95))
+                + " / "
+                + formatMillis(frameStats.getPercentile(stage, 99))
+                + " ms";
+      }
+      this.hudWidth = 0;
+      for (String line : this.hudLines)
+        this.hudWidth = Math.max(this.hudWidth, this.stringWidth(glyphFactory, line));
+    }
+
+    int lineHeight = glyphFactory.getOrigHeight() + 1;
+    this.trueColorBitmapManager.fillRect(
+        0, 0, this.hudWidth + 8, this.hudLines.length * lineHeight + 4, Color.black.getRGB());
+    for (int i = 0; i < this.hudLines.length; i++) {
+      this.trueColorBitmapManager.paintString(
+          glyphFactory,
+          this.hudLines[i],
+          4,
+          (i + 1) * lineHeight - 2,
+          this.introColorManager.getMasterColor(),
+          null,
+          false);
+    }
+  }
+
+  // one decimal
+  private static String formatMillis(long nanos) {
+    long tenths = (nanos + 50_000) / 100_000;
+    return (tenths / 10) + "." + (tenths % 10);
+  }
+
   public void redrawBackgroundImage(int x, int y, int width, int height) {
-    this.trueColorImageManager.paintTrueColorObject(
+    this.trueColorBitmapManager.paintTrueColorObject(
         this.backgroundBitmap, x, y, x + width, y + height, x, y);
   }
 
-  public synchronized void recomputeImage() {
-    this.trueColorImageManager.recomputeImage();
+  /** Starts painting a new frame; called on the animation thread before any paint method. */
+  public void beginFrame() {
+    this.trueColorBitmapManager.setBitmap(this.frameExchange.getBackBuffer());
   }
-  //
-  public synchronized Image getImage() {
-    Image image = this.trueColorImageManager.getImage();
-    // the following line is VERY important for preventing flickering
-    // in rendering this image in IE environment
-    //		image.flush();
-    return image;
+
+  /** Hands the frame painted since {@link #beginFrame()} over to the event dispatch thread. */
+  public void endFrame() {
+    this.frameExchange.publish();
+  }
+
+  /** @return image of the latest complete frame; to be called on the event dispatch thread only */
+  public Image getLatestImage() {
+    int index = this.frameExchange.acquireLatest();
+    // a new index always means a newly published frame
+    boolean changed = (index != this.shownFrame);
+    this.shownFrame = index;
+    return this.framePresenter.present(index, changed);
   }
 }
@@ -22,6 +22,7 @@
  */
 package com.github.idelstak.matrixrain.phosphore;
 
+import com.github.idelstak.matrixrain.auxiliary.math.RandomSource;
 import com.github.idelstak.matrixrain.font.MemoryGlyph;
 
 public final class PhosphoreCloud {
@@ -139,7 +140,7 @@ public final class PhosphoreCloud {
   public static double getRandom(double minValue, double maxValue) {
     // 0.0 -> min
     // 1.0 -> max
-    double rand = Math.random();
+    double rand = RandomSource.current().nextDouble();
     return minValue + (maxValue - minValue) * rand;
   }
 
@@ -162,10 +163,10 @@ public final class PhosphoreCloud {
     }
 
     // choose cloud Y limits
-    double startY = 1.0 * cloudRadius * Math.random();
+    double startY = 1.0 * cloudRadius * RandomSource.current().nextDouble();
     // double endY = 2.0*halfHeight-cloudRadius*getRandom(0.0,
     // 2.0*cloudRadius-startY);
-    double endY = 2.0 * halfHeight - 1.0 * cloudRadius * Math.random();
+    double endY = 2.0 * halfHeight - 1.0 * cloudRadius * RandomSource.current().nextDouble();
     if (startY > endY) {
       startY = halfHeight;
       endY = halfHeight;
@@ -253,10 +254,10 @@ public final class PhosphoreCloud {
     }
 
     // choose cloud Y limits
-    double startY = 1.0 * cloudRadius * Math.random();
+    double startY = 1.0 * cloudRadius * RandomSource.current().nextDouble();
     // double endY = 2.0*halfHeight-cloudRadius*getRandom(0.0,
     // 2.0*cloudRadius-startY);
-    double endY = 2.0 * halfHeight - 1.0 * cloudRadius * Math.random();
+    double endY = 2.0 * halfHeight - 1.0 * cloudRadius * RandomSource.current().nextDouble();
     if (startY > endY) {
       startY = halfHeight;
       endY = halfHeight;
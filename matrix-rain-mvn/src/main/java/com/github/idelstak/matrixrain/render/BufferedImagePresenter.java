@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
+
+/**
+ * Presents frames from {@link BufferedImage#TYPE_INT_RGB} images whose {@link DataBufferInt} arrays
+ * are the frame buffers themselves, so a finished frame needs no copy or conversion before it is
+ * drawn. Grabbing the data array makes the images unmanaged (they are never cached in video
+ * memory); when a graphics configuration is given, the latest frame is therefore blitted once into
+ * a {@link VolatileImage} and that is what gets drawn.
+ */
+public final class BufferedImagePresenter implements FramePresenter {
+  private final BufferedImage[] images;
+
+  private final int[][] pixels;
+
+  private final GraphicsConfiguration graphicsConfiguration;
+
+  private VolatileImage volatileImage;
+
+  public BufferedImagePresenter(int width, int height, int bufferCount) {
+    this(width, height, bufferCount, null);
+  }
+
+  /**
+   * @param graphicsConfiguration configuration to create the accelerated image for, or <code>null
+   *     </code> to draw the buffered images directly
+   */
+  public BufferedImagePresenter(
+      int width, int height, int bufferCount, GraphicsConfiguration graphicsConfiguration) {
+    this.images = new BufferedImage[bufferCount];
+    this.pixels = new int[bufferCount][];
+    for (int i = 0; i < bufferCount; i++) {
+      this.images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      this.pixels[i] = ((DataBufferInt) this.images[i].getRaster().getDataBuffer()).getData();
+    }
+    this.graphicsConfiguration = graphicsConfiguration;
+  }
+
+  @Override
+  public int getBufferCount() {
+    return this.pixels.length;
+  }
+
+  @Override
+  public int[] getPixels(int index) {
+    return this.pixels[index];
+  }
+
+  @Override
+  public Image present(int index, boolean changed) {
+    BufferedImage image = this.images[index];
+    if (this.graphicsConfiguration == null) return image;
+
+    if (this.volatileImage == null) {
+      this.volatileImage =
+          this.graphicsConfiguration.createCompatibleVolatileImage(
+              image.getWidth(), image.getHeight());
+      changed = true;
+    }
+    int validation = this.volatileImage.validate(this.graphicsConfiguration);
+    if (validation == VolatileImage.IMAGE_INCOMPATIBLE) {
+      this.volatileImage.flush();
+      this.volatileImage =
+          this.graphicsConfiguration.createCompatibleVolatileImage(
+              image.getWidth(), image.getHeight());
+    }
+    if (changed || (validation != VolatileImage.IMAGE_OK)) {
+      Graphics2D graphics = this.volatileImage.createGraphics();
+      graphics.drawImage(image, 0, 0, null);
+      graphics.dispose();
+    }
+    // surface lost again while copying - fall back to the frame itself for this paint
+    if (this.volatileImage.contentsLost()) return image;
+    return this.volatileImage;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple-buffered handoff of whole frames from a single producer (the animation thread) to a single
+ * consumer (the event dispatch thread). The producer always owns one buffer to paint into, the
+ * consumer always owns one buffer to show, and the third holds the most recently completed frame.
+ * Publishing and acquiring are single atomic swaps, so neither side ever waits for the other: the
+ * producer may overwrite a frame the consumer never saw, and the consumer may show the same frame
+ * twice, but it never sees a half painted one.
+ */
+public final class FrameExchange {
+  private static final int INDEX_MASK = 0x3;
+
+  // set while the ready buffer holds a frame the consumer has not taken yet
+  private static final int FRESH = 0x4;
+
+  private final int[][] buffers;
+
+  // index of the ready buffer, plus the FRESH bit
+  private final AtomicInteger state = new AtomicInteger(1);
+
+  // touched by the producer only
+  private int backIndex = 2;
+
+  // touched by the consumer only
+  private int frontIndex = 0;
+
+  private volatile long publishedFrames;
+
+  public FrameExchange(int size) {
+    this(new int[size], new int[size], new int[size]);
+  }
+
+  public FrameExchange(int[] buffer0, int[] buffer1, int[] buffer2) {
+    if ((buffer0.length != buffer1.length) || (buffer0.length != buffer2.length))
+      throw new IllegalArgumentException("buffers must have the same length");
+    this.buffers = new int[][] {buffer0, buffer1, buffer2};
+  }
+
+  /** @return the buffer the producer should paint the next frame into */
+  public int[] getBackBuffer() {
+    return this.buffers[this.backIndex];
+  }
+
+  /**
+   * Makes the frame in the back buffer the latest one and hands the producer a new back buffer.
+   * Called by the producer only.
+   */
+  public void publish() {
+    int previous = this.state.getAndSet(this.backIndex | FRESH);
+    this.backIndex = previous & INDEX_MASK;
+    this.publishedFrames++;
+  }
+
+  /**
+   * Takes the latest published frame if there is one the consumer has not seen yet. Called by the
+   * consumer only.
+   *
+   * @return index of the buffer holding the latest frame; it stays untouched by the producer until
+   *     the next call
+   */
+  public int acquireLatest() {
+    if ((this.state.get() & FRESH) != 0) {
+      int previous = this.state.getAndSet(this.frontIndex);
+      this.frontIndex = previous & INDEX_MASK;
+    }
+    return this.frontIndex;
+  }
+
+  public int[] getBuffer(int index) {
+    return this.buffers[index];
+  }
+
+  public long getPublishedFrames() {
+    return this.publishedFrames;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.awt.Image;
+
+/**
+ * Turns finished ARGB frames into images that can be drawn on screen. A presenter owns a fixed
+ * number of pixel buffers (one per slot of a {@link FrameExchange}); the frame is painted straight
+ * into {@link #getPixels(int)} and {@link #present(int, boolean)} returns the matching image.
+ */
+public interface FramePresenter {
+  int getBufferCount();
+
+  /** @return the pixel array backing the given buffer, one int per pixel, row by row */
+  int[] getPixels(int index);
+
+  /**
+   * Called on the event dispatch thread only.
+   *
+   * @param index buffer holding the frame to show
+   * @param changed whether the pixels of that buffer changed since it was last presented
+   * @return image showing the frame in the given buffer
+   */
+  Image present(int index, boolean changed);
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.awt.Component;
+import java.awt.GraphicsConfiguration;
+
+/**
+ * Picks the frame presenter from the <code>matrixrain.presenter</code> system property: <code>
+ * buffered</code> (the default), <code>volatile</code> or <code>memory</code>.
+ */
+public final class FramePresenters {
+
+  private FramePresenters() {}
+
+  public static FramePresenter createPresenter(Component comp, int width, int height, int count) {
+    String kind = System.getProperty("matrixrain.presenter", "buffered");
+    return switch (kind) {
+      case "memory" -> new MemoryImagePresenter(width, height, count);
+      case "volatile" -> {
+        GraphicsConfiguration graphicsConfiguration = comp.getGraphicsConfiguration();
+        if (graphicsConfiguration == null)
+          System.err.println("No graphics configuration for volatile images, using buffered");
+        yield new BufferedImagePresenter(width, height, count, graphicsConfiguration);
+      }
+      default -> {
+        if (!kind.equals("buffered"))
+          System.err.println("Unknown presenter " + kind + ", using buffered");
+        yield new BufferedImagePresenter(width, height, count);
+      }
+    };
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fixed-timestep loop: the simulation advances in ticks of constant length, while rendering is
+ * paced separately at the target frame rate. When the simulation falls behind (a slow tick, a GC
+ * pause) up to {@code maxTicksPerFrame} ticks are run back to back without rendering in between;
+ * a backlog larger than that is dropped so the loop never spirals.
+ *
+ * <p>Pacing uses {@link System#nanoTime()}: the thread parks until shortly before the deadline and
+ * spins for the rest, which keeps the jitter well below the millisecond granularity of sleep.
+ */
+public final class FrameScheduler {
+
+  public interface Stage {
+    /** Advances the simulation by one tick. */
+    void tick();
+
+    /**
+     * Renders the current state.
+     *
+     * @param alpha how far the real time is past the last tick, in ticks (0..1), for renderers that
+     *     interpolate
+     * @return whether a frame was presented; false when there was nothing new to show
+     */
+    boolean render(double alpha);
+  }
+
+  // below this the loop spins instead of parking
+  private static final long SPIN_NANOS = 1_500_000L;
+
+  private final long tickNanos;
+
+  private final int maxTicksPerFrame;
+
+  private volatile long frameNanos;
+
+  private volatile long tickCount;
+
+  private volatile long frameCount;
+
+  // paced passes of the loop, presented or not
+  private volatile long passCount;
+
+  private volatile long droppedFrames;
+
+  private volatile long catchUpTicks;
+
+  private volatile long droppedTicks;
+
+  private volatile long lastJitterNanos;
+
+  private volatile long maxJitterNanos;
+
+  private volatile long totalJitterNanos;
+
+  public FrameScheduler(long tickNanos, int targetFps, int maxTicksPerFrame) {
+    if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos must be positive");
+    if (maxTicksPerFrame <= 0)
+      throw new IllegalArgumentException("maxTicksPerFrame must be positive");
+    this.tickNanos = tickNanos;
+    this.maxTicksPerFrame = maxTicksPerFrame;
+    this.setTargetFps(targetFps);
+  }
+
+  /** Can be called from any thread; takes effect from the next frame. */
+  public void setTargetFps(int targetFps) {
+    if (targetFps <= 0) throw new IllegalArgumentException("targetFps must be positive");
+    this.frameNanos = 1_000_000_000L / targetFps;
+  }
+
+  public int getTargetFps() {
+    return (int) (1_000_000_000L / this.frameNanos);
+  }
+
+  /** Runs the loop on the calling thread for as long as {@code running} says so. */
+  public void run(BooleanSupplier running, Stage stage) {
+    long previousTime = System.nanoTime();
+    long nextFrameTime = previousTime;
+    long accumulator = 0;
+
+    while (running.getAsBoolean()) {
+      long now = System.nanoTime();
+
+      long jitter = Math.abs(now - nextFrameTime);
+      this.lastJitterNanos = jitter;
+      if (jitter > this.maxJitterNanos) this.maxJitterNanos = jitter;
+      this.totalJitterNanos += jitter;
+      this.passCount++;
+
+      accumulator += now - previousTime;
+      previousTime = now;
+
+      int ticks = 0;
+      while ((accumulator >= this.tickNanos) && (ticks < this.maxTicksPerFrame)) {
+        stage.tick();
+        accumulator -= this.tickNanos;
+        ticks++;
+      }
+      this.tickCount += ticks;
+      // every tick beyond the first one ran without a render after it
+      if (ticks > 1) this.catchUpTicks += ticks - 1;
+      if (accumulator >= this.tickNanos) {
+        // too far behind to catch up - let the simulation time slip
+        long backlog = accumulator / this.tickNanos;
+        this.droppedTicks += backlog;
+        accumulator -= backlog * this.tickNanos;
+      }
+
+      if (stage.render((double) accumulator / (double) this.tickNanos)) this.frameCount++;
+
+      long frameNanos = this.frameNanos;
+      nextFrameTime += frameNanos;
+      now = System.nanoTime();
+      // after a long stall start pacing afresh instead of rushing through missed frames
+      if (now - nextFrameTime > frameNanos) {
+        this.droppedFrames += (now - nextFrameTime) / frameNanos;
+        nextFrameTime = now;
+      }
+      if (!pace(nextFrameTime)) return;
+    }
+  }
+
+  // waits until the deadline; false if the thread was interrupted
+  private static boolean pace(long deadline) {
+    while (true) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) return true;
+      if (remaining > SPIN_NANOS) LockSupport.parkNanos(remaining - SPIN_NANOS);
+      else Thread.onSpinWait();
+      if (Thread.interrupted()) return false;
+    }
+  }
+
+  public long getTickNanos() {
+    return this.tickNanos;
+  }
+
+  public long getTickCount() {
+    return this.tickCount;
+  }
+
+  /** Frames presented; the passes with nothing new to show are not counted. */
+  public long getFrameCount() {
+    return this.frameCount;
+  }
+
+  /** Render deadlines missed entirely, because a tick or a render overran by whole frames. */
+  public long getDroppedFrames() {
+    return this.droppedFrames;
+  }
+
+  /** Ticks run right after another tick, without a render in between, to catch up. */
+  public long getCatchUpTicks() {
+    return this.catchUpTicks;
+  }
+
+  /** Ticks given up because the simulation was too far behind to catch up. */
+  public long getDroppedTicks() {
+    return this.droppedTicks;
+  }
+
+  /** Distance between the scheduled and the actual start of the last frame. */
+  public long getLastJitterNanos() {
+    return this.lastJitterNanos;
+  }
+
+  public long getMaxJitterNanos() {
+    return this.maxJitterNanos;
+  }
+
+  public long getMeanJitterNanos() {
+    long passes = this.passCount;
+    return (passes == 0) ? 0 : this.totalJitterNanos / passes;
+  }
+}
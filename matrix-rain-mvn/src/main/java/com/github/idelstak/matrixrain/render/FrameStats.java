@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.util.Arrays;
+
+/**
+ * Rolling timings of the stages of a frame, in nanoseconds. Every stage keeps its last {@link
+ * #WINDOW} samples in a ring, percentiles are taken over that window. Recording neither allocates
+ * nor sorts, so it can stay on in every frame; the percentiles are sorted on request.
+ *
+ * <p>{@link #STAGE_FRAME} is not a part of the frame but the interval between two presented frames,
+ * it gives the frame rate.
+ */
+public final class FrameStats {
+  /** Advancing the animation (IntroManager.iteration without the two stages below). */
+  public static final int STAGE_SIMULATE = 0;
+
+  /** Drawing the drops, the title and the rains into the pixel maps. */
+  public static final int STAGE_RASTERIZE = 1;
+
+  /** Turning the pixel maps into the ARGB / indexed frame. */
+  public static final int STAGE_COLORIZE = 2;
+
+  /** Painting the frame into the presented buffer and handing it over. */
+  public static final int STAGE_PRESENT = 3;
+
+  public static final int STAGE_FRAME = 4;
+
+  public static final int STAGE_COUNT = 5;
+
+  public static final int WINDOW = 128;
+
+  private static final String[] STAGE_NAMES = {
+    "simulate", "rasterize", "colorize", "present", "frame"
+  };
+
+  private final long[][] samples = new long[STAGE_COUNT][WINDOW];
+
+  // samples recorded so far, the next one goes to count % WINDOW
+  private final long[] sampleCounts = new long[STAGE_COUNT];
+
+  private final long[] sortBuffer = new long[WINDOW];
+
+  private long lastFrameTime = -1;
+
+  public static String getStageName(int stage) {
+    return STAGE_NAMES[stage];
+  }
+
+  public synchronized void record(int stage, long nanos) {
+    long count = this.sampleCounts[stage];
+    this.samples[stage][(int) (count % WINDOW)] = nanos;
+    this.sampleCounts[stage] = count + 1;
+  }
+
+  /** Records the time since <code>startNanos</code> (a {@link System#nanoTime()} value). */
+  public void recordSince(int stage, long startNanos) {
+    this.record(stage, System.nanoTime() - startNanos);
+  }
+
+  /** Marks a presented frame; the first one only starts the interval. */
+  public synchronized void frameCompleted() {
+    long now = System.nanoTime();
+    if (this.lastFrameTime >= 0) this.record(STAGE_FRAME, now - this.lastFrameTime);
+    this.lastFrameTime = now;
+  }
+
+  public synchronized long getSampleCount(int stage) {
+    return this.sampleCounts[stage];
+  }
+
+  /**
+   * @param percentile 0..100
+   * @return the given percentile of the samples in the window, 0 if there are none
+   */
+  public synchronized long getPercentile(int stage, double percentile) {
+    int size = (int) Math.min(this.sampleCounts[stage], WINDOW);
+    if (size == 0) return 0;
+    System.arraycopy(this.samples[stage], 0, this.sortBuffer, 0, size);
+    Arrays.sort(this.sortBuffer, 0, size);
+    int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+    return this.sortBuffer[Math.max(0, Math.min(size - 1, index))];
+  }
+
+  public synchronized long getMean(int stage) {
+    int size = (int) Math.min(this.sampleCounts[stage], WINDOW);
+    if (size == 0) return 0;
+    long total = 0;
+    for (int i = 0; i < size; i++) total += this.samples[stage][i];
+    return total / size;
+  }
+
+  /** @return presented frames per second over the window, 0 before the second frame */
+  public double getFramesPerSecond() {
+    long meanFrameNanos = this.getMean(STAGE_FRAME);
+    if (meanFrameNanos == 0) return 0.0;
+    return 1_000_000_000.0 / meanFrameNanos;
+  }
+
+  public synchronized void reset() {
+    Arrays.fill(this.sampleCounts, 0);
+    this.lastFrameTime = -1;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.MemoryImageSource;
+
+/**
+ * Presents frames through animated {@link MemoryImageSource}s: every changed frame is pushed
+ * through the image producer / consumer chain with {@link MemoryImageSource#newPixels()}, which
+ * converts the whole frame again. Kept as the reference path.
+ */
+public final class MemoryImagePresenter implements FramePresenter {
+  private final int[][] pixels;
+
+  private final MemoryImageSource[] sources;
+
+  private final Image[] images;
+
+  public MemoryImagePresenter(int width, int height, int bufferCount) {
+    this.pixels = new int[bufferCount][width * height];
+    this.sources = new MemoryImageSource[bufferCount];
+    this.images = new Image[bufferCount];
+    for (int i = 0; i < bufferCount; i++) {
+      this.sources[i] = new MemoryImageSource(width, height, this.pixels[i], 0, width);
+      this.sources[i].setAnimated(true);
+      this.images[i] = Toolkit.getDefaultToolkit().createImage(this.sources[i]);
+    }
+  }
+
+  @Override
+  public int getBufferCount() {
+    return this.pixels.length;
+  }
+
+  @Override
+  public int[] getPixels(int index) {
+    return this.pixels[index];
+  }
+
+  @Override
+  public Image present(int index, boolean changed) {
+    if (changed) this.sources[index].newPixels();
+    return this.images[index];
+  }
+}
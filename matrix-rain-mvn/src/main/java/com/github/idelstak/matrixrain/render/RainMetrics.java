@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import com.github.idelstak.matrixrain.font.GlyphFactory;
+import com.github.idelstak.matrixrain.intro.IntroManager;
+
+/**
+ * Exposes a running animation over JMX as <code>com.github.idelstak.matrixrain:type=RainMetrics
+ * </code>. The counters can be read from any thread. Changes requested through the MBean are
+ * queued; the animation thread calls {@link #applyPendingChanges()} before each tick, so the engine
+ * itself is only ever touched by that thread.
+ */
+public final class RainMetrics implements RainMetricsMBean {
+  public static final String OBJECT_NAME = "com.github.idelstak.matrixrain:type=RainMetrics";
+
+  private static final int NONE = -1;
+
+  private final FrameStats frameStats;
+
+  private volatile IntroManager introManager;
+
+  private volatile FrameScheduler frameScheduler;
+
+  private volatile GlyphFactory[] glyphFactories = new GlyphFactory[0];
+
+  private final AtomicInteger pendingTargetFps = new AtomicInteger(NONE);
+
+  private final AtomicInteger pendingTargetDropCount = new AtomicInteger(NONE);
+
+  private final AtomicInteger pendingDropDelta = new AtomicInteger();
+
+  // positive for speedup steps, negative for slowdown steps
+  private final AtomicInteger pendingSpeedSteps = new AtomicInteger();
+
+  private ObjectName objectName;
+
+  public RainMetrics(FrameStats frameStats) {
+    this.frameStats = frameStats;
+  }
+
+  public void setIntroManager(IntroManager introManager) {
+    this.introManager = introManager;
+  }
+
+  public void setFrameScheduler(FrameScheduler frameScheduler) {
+    this.frameScheduler = frameScheduler;
+  }
+
+  public void setGlyphFactories(GlyphFactory... glyphFactories) {
+    this.glyphFactories = glyphFactories.clone();
+  }
+
+  /** @return whether the MBean could be registered with the platform MBean server */
+  public synchronized boolean register() {
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      this.objectName = name;
+      return true;
+    } catch (JMException e) {
+      System.err.println("Rain metrics not registered: " + e);
+      return false;
+    }
+  }
+
+  public synchronized void unregister() {
+    if (this.objectName == null) return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+    } catch (JMException e) {
+      System.err.println("Rain metrics not unregistered: " + e);
+    }
+    this.objectName = null;
+  }
+
+  /** Applies the changes requested since the last call; on the animation thread only. */
+  public void applyPendingChanges() {
+    FrameScheduler scheduler = this.frameScheduler;
+    if (scheduler != null) {
+      int targetFps = this.pendingTargetFps.getAndSet(NONE);
+      if (targetFps != NONE) scheduler.setTargetFps(targetFps);
+    }
+
+    IntroManager manager = this.introManager;
+    if (manager == null) return;
+    int dropDelta = this.pendingDropDelta.getAndSet(0);
+    int targetDropCount = this.pendingTargetDropCount.getAndSet(NONE);
+    if (targetDropCount != NONE)
+      dropDelta += targetDropCount - manager.getDropManager().getDropCount();
+    if (dropDelta != 0) manager.getDropManager().adjustDropCount(dropDelta);
+
+    int speedSteps = this.pendingSpeedSteps.getAndSet(0);
+    for (; speedSteps > 0; speedSteps--) manager.speedup();
+    for (; speedSteps < 0; speedSteps++) manager.slowdown();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  @Override
+  public double getFramesPerSecond() {
+    return this.frameStats.getFramesPerSecond();
+  }
+
+  @Override
+  public double getFrameTimeP50Millis() {
+    return toMillis(this.frameStats.getPercentile(FrameStats.STAGE_FRAME, 50));
+  }
+
+  @Override
+  public double getFrameTimeP95Millis() {
+    return toMillis(this.frameStats.getPercentile(FrameStats.STAGE_FRAME, 95));
+  }
+
+  @Override
+  public double getFrameTimeP99Millis() {
+    return toMillis(this.frameStats.getPercentile(FrameStats.STAGE_FRAME, 99));
+  }
+
+  @Override
+  public double getStagePercentileMillis(String stage, double percentile) {
+    for (int i = 0; i < FrameStats.STAGE_COUNT; i++) {
+      if (FrameStats.getStageName(i).equals(stage))
+        return toMillis(this.frameStats.getPercentile(i, percentile));
+    }
+    throw new IllegalArgumentException("Unknown stage " + stage);
+  }
+
+  @Override
+  public String getIntroState() {
+    IntroManager manager = this.introManager;
+    if (manager == null) return "";
+    return IntroManager.getStateName(manager.getState());
+  }
+
+  @Override
+  public int getActiveDrops() {
+    IntroManager manager = this.introManager;
+    if (manager == null) return 0;
+    return manager.getDropManager().getDropCount();
+  }
+
+  @Override
+  public long getGlyphCacheBytes() {
+    long result = 0;
+    for (GlyphFactory glyphFactory : this.glyphFactories) result += glyphFactory.getPixelBytes();
+    return result;
+  }
+
+  @Override
+  public long getFrameCacheBytes() {
+    IntroManager manager = this.introManager;
+    if (manager == null) return 0;
+    return manager.getTitleFrameBytes();
+  }
+
+  @Override
+  public long getDroppedFrames() {
+    FrameScheduler scheduler = this.frameScheduler;
+    return (scheduler == null) ? 0 : scheduler.getDroppedFrames();
+  }
+
+  @Override
+  public long getCatchUpTicks() {
+    FrameScheduler scheduler = this.frameScheduler;
+    return (scheduler == null) ? 0 : scheduler.getCatchUpTicks();
+  }
+
+  @Override
+  public long getDroppedTicks() {
+    FrameScheduler scheduler = this.frameScheduler;
+    return (scheduler == null) ? 0 : scheduler.getDroppedTicks();
+  }
+
+  @Override
+  public int getTargetFps() {
+    int pending = this.pendingTargetFps.get();
+    if (pending != NONE) return pending;
+    FrameScheduler scheduler = this.frameScheduler;
+    return (scheduler == null) ? 0 : scheduler.getTargetFps();
+  }
+
+  @Override
+  public void setTargetFps(int targetFps) {
+    if (targetFps <= 0) throw new IllegalArgumentException("targetFps must be positive");
+    this.pendingTargetFps.set(targetFps);
+  }
+
+  @Override
+  public int getTargetDropCount() {
+    int pending = this.pendingTargetDropCount.get();
+    return (pending != NONE) ? pending : this.getActiveDrops();
+  }
+
+  @Override
+  public void setTargetDropCount(int dropCount) {
+    if (dropCount < 0) throw new IllegalArgumentException("dropCount must not be negative");
+    this.pendingTargetDropCount.set(dropCount);
+  }
+
+  @Override
+  public void adjustDropCount(int delta) {
+    this.pendingDropDelta.addAndGet(delta);
+  }
+
+  @Override
+  public void speedup() {
+    this.pendingSpeedSteps.incrementAndGet();
+  }
+
+  @Override
+  public void slowdown() {
+    this.pendingSpeedSteps.decrementAndGet();
+  }
+}
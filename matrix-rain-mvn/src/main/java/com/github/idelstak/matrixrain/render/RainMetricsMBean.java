@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+/**
+ * Management interface of {@link RainMetrics}: live counters of a running animation and a few
+ * knobs. The knobs are only recorded here and applied by the animation thread at its next tick.
+ */
+public interface RainMetricsMBean {
+  /** @return presented frames per second over the last frames */
+  double getFramesPerSecond();
+
+  double getFrameTimeP50Millis();
+
+  double getFrameTimeP95Millis();
+
+  double getFrameTimeP99Millis();
+
+  /**
+   * @param stage simulate, rasterize, colorize, present or frame
+   * @param percentile 0..100
+   */
+  double getStagePercentileMillis(String stage, double percentile);
+
+  String getIntroState();
+
+  int getActiveDrops();
+
+  /** @return bytes held by the pixels of the rain and title glyphs */
+  long getGlyphCacheBytes();
+
+  /** @return bytes held by the precomputed title zoom frames */
+  long getFrameCacheBytes();
+
+  /** @return render deadlines missed entirely, see FrameScheduler.getDroppedFrames */
+  long getDroppedFrames();
+
+  /** @return ticks run back to back to catch up, see FrameScheduler.getCatchUpTicks */
+  long getCatchUpTicks();
+
+  /** @return ticks given up when too far behind, see FrameScheduler.getDroppedTicks */
+  long getDroppedTicks();
+
+  /** @return how often per second the animation checks for a new frame */
+  int getTargetFps();
+
+  /**
+   * Changes how often the animation checks for a new frame. The rain itself keeps advancing every
+   * MatrixPanel.TIME_DELTA; only with MatrixPanel.CROSS_FADE are the frames in between painted.
+   */
+  void setTargetFps(int targetFps);
+
+  /** @return the requested drop count until it is applied, then the active drops */
+  int getTargetDropCount();
+
+  /** Adds or removes drops until there are about this many. */
+  void setTargetDropCount(int dropCount);
+
+  void adjustDropCount(int delta);
+
+  /** One step faster, as IntroManager.speedup. */
+  void speedup();
+
+  /** One step slower, as IntroManager.slowdown. */
+  void slowdown();
+}
@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ * Copyright © 2022 Hiram K
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.idelstak.matrixrain.render;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager;
+import com.github.idelstak.matrixrain.auxiliary.graphics.colors.manager.ColorManager1ColorScheme;
+import com.github.idelstak.matrixrain.auxiliary.math.intersect.Circle1PixelArbitraryIntersectorFactory;
+import com.github.idelstak.matrixrain.drop.DropManager;
+import com.github.idelstak.matrixrain.font.GlyphFactories;
+import com.github.idelstak.matrixrain.font.GlyphFactory;
+import com.github.idelstak.matrixrain.intro.IntroManager;
+import com.github.idelstak.matrixrain.phosphore.PhosphoreCloudFactory;
+
+/**
+ * Drives the intro without any component: frames are rendered into int[] ARGB buffers of the
+ * requested size and pulled by the caller as fast as it wants them. Works under
+ * java.awt.headless=true.
+ *
+ * <p>One frame is one intro iteration, i.e. {@link
+ * com.github.idelstak.matrixrain.MatrixPanel#TIME_DELTA} of animation time.
+ */
+public final class RenderEngine {
+
+  private final int width, height;
+
+  private final IntroManager introManager;
+
+  private long frameCount;
+
+  public RenderEngine(int width, int height, Image mainImage, String titleLine) {
+    this(width, height, mainImage, titleLine, new ColorManager1ColorScheme(Color.green));
+  }
+
+  public RenderEngine(
+      int width, int height, Image mainImage, String titleLine, ColorManager colorManager) {
+    this.width = width;
+    this.height = height;
+
+    GlyphFactory glyphFactory = GlyphFactories.createRainGlyphFactory();
+    GlyphFactory abcGlyphFactory = GlyphFactories.createTitleGlyphFactory();
+
+    DropManager dropManager = new DropManager(glyphFactory, width, height);
+    dropManager.createDrops();
+
+    this.introManager =
+        new IntroManager(width, height, dropManager, mainImage, colorManager, glyphFactory);
+    this.introManager.showTitle(
+        titleLine,
+        abcGlyphFactory,
+        Math.min(40, height / 20),
+        new PhosphoreCloudFactory(5),
+        new Circle1PixelArbitraryIntersectorFactory());
+    this.frameCount = 0;
+  }
+
+  /**
+   * Advances the animation by one iteration and returns the new frame. The returned array is
+   * owned by the engine and is overwritten by the next call.
+   */
+  public int[] nextFrame() {
+    this.introManager.iteration(false);
+    this.frameCount++;
+    return this.introManager.getBitmap1D();
+  }
+
+  /** Advances the animation by one iteration and copies the new frame into the given buffer. */
+  public void nextFrame(int[] frameBuffer) {
+    System.arraycopy(this.nextFrame(), 0, frameBuffer, 0, this.width * this.height);
+  }
+
+  /**
+   * Switches the index-colored stages (the rain and the title) to 8-bit output: frames are then
+   * read through {@link #nextIndexedFrame()} and colorized by the palette of the image instead of
+   * per pixel. The ARGB frames of those stages are not updated while this is on.
+   */
+  public void setIndexedOutput(boolean indexedOutput) {
+    this.introManager.setIndexedOutput(indexedOutput);
+  }
+
+  /**
+   * Advances the animation by one iteration and returns the new frame as an 8-bit image owned by
+   * the engine, or <code>null</code> when the current stage is true-color (read it through {@link
+   * #getFrame()}).
+   */
+  public BufferedImage nextIndexedFrame() {
+    this.introManager.iteration(false);
+    this.frameCount++;
+    return this.introManager.getIndexedImage();
+  }
+
+  /** Replaces the palette of the index-colored stages; a 256-entry update for indexed output. */
+  public void setPalette(ColorManager colorManager) {
+    this.introManager.setPalette(colorManager);
+  }
+
+  /** The last rendered frame, without advancing the animation. */
+  public int[] getFrame() {
+    return this.introManager.getBitmap1D();
+  }
+
+  public boolean isIntroEnded() {
+    return this.introManager.isEnded();
+  }
+
+  /** Starts over from the regular rain, as MatrixPanel does once the intro has ended. */
+  public void replay(boolean stayForeverInMatrixRain) {
+    this.introManager.replay(stayForeverInMatrixRain);
+  }
+
+  /** Simulate, rasterize and colorize times of the frames rendered so far. */
+  public FrameStats getFrameStats() {
+    return this.introManager.getFrameStats();
+  }
+
+  public IntroManager getIntroManager() {
+    return this.introManager;
+  }
+
+  public long getFrameCount() {
+    return this.frameCount;
+  }
+
+  public int getWidth() {
+    return this.width;
+  }
+
+  public int getHeight() {
+    return this.height;
+  }
+}